@@ -0,0 +1,135 @@
+/*****************************************************************************
+ * MetaBenchmarkTest.java
+ *****************************************************************************
+ * Copyright © 2017 VLC authors, VideoLAN and VideoLabs
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston MA 02110-1301, USA.
+ *****************************************************************************/
+
+package org.videolan.libvlc;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares {@link Media#fetchMetas(int...)} with one {@link Media#getMeta(int)} call per meta, as
+ * done to bind a list row.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MetaBenchmarkTest {
+    private final static String TAG = "LibVLC/MetaBenchmark";
+    private static final int ROUNDS = 5000;
+    private static final int[] ROW_METAS = { Media.Meta.Title, Media.Meta.Artist,
+            Media.Meta.Album, Media.Meta.TrackNumber, Media.Meta.ArtworkURL };
+
+    private File mFile;
+    private LibVLC mLibVLC;
+    private Media mMedia;
+
+    @Before
+    public void setUp() throws IOException {
+        final Context context = InstrumentationRegistry.getTargetContext();
+        mFile = new File(context.getCacheDir(), "meta_benchmark.wav");
+        writeSilence(mFile);
+        mLibVLC = new LibVLC(context, null);
+        mMedia = new Media(mLibVLC, mFile.getAbsolutePath());
+    }
+
+    @After
+    public void tearDown() {
+        mMedia.release();
+        mLibVLC.release();
+        mFile.delete();
+    }
+
+    @Test
+    public void fetchMetasVersusGetMeta() {
+        /* missing metas are fetched from libvlc on each call */
+        assertNull(mMedia.getInfo());
+        benchmark("not parsed");
+        assertTrue(mMedia.parse(Media.Parse.ParseLocal));
+        /* metas are read from the MediaInfo snapshot published by parse() */
+        final MediaInfo info = mMedia.getInfo();
+        assertNotNull(info);
+        benchmark("parsed");
+        assertSame(info, mMedia.getInfo());
+    }
+
+    private void benchmark(String state) {
+        final String[] perField = new String[ROW_METAS.length];
+        String[] batch = null;
+        for (int i = 0; i < ROUNDS / 10; ++i) {
+            getMetas(perField);
+            batch = mMedia.fetchMetas(ROW_METAS);
+        }
+        assertArrayEquals(perField, batch);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; ++i)
+            getMetas(perField);
+        final long perFieldNs = (System.nanoTime() - start) / ROUNDS;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; ++i)
+            mMedia.fetchMetas(ROW_METAS);
+        final long batchNs = (System.nanoTime() - start) / ROUNDS;
+
+        Log.i(TAG, state + ": " + ROW_METAS.length + " metas, getMeta() " + perFieldNs
+                + "ns, fetchMetas() " + batchNs + "ns");
+    }
+
+    private void getMetas(String[] metas) {
+        for (int i = 0; i < ROW_METAS.length; ++i)
+            metas[i] = mMedia.getMeta(ROW_METAS[i]);
+    }
+
+    /* one second of 8 kHz 8 bits mono PCM */
+    private static void writeSilence(File file) throws IOException {
+        final int dataSize = 8000;
+        final ByteBuffer wav = ByteBuffer.allocate(44 + dataSize).order(ByteOrder.LITTLE_ENDIAN);
+        wav.put("RIFF".getBytes("US-ASCII")).putInt(36 + dataSize);
+        wav.put("WAVEfmt ".getBytes("US-ASCII")).putInt(16);
+        wav.putShort((short) 1).putShort((short) 1).putInt(8000).putInt(8000);
+        wav.putShort((short) 1).putShort((short) 8);
+        wav.put("data".getBytes("US-ASCII")).putInt(dataSize);
+        while (wav.hasRemaining())
+            wav.put((byte) 0x80);
+        final FileOutputStream os = new FileOutputStream(file);
+        try {
+            os.write(wav.array());
+        } finally {
+            os.close();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*****************************************************************************
+ * EventBatcher.java
+ *****************************************************************************
+ * Copyright © 2017 VLC authors, VideoLAN and VideoLabs
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston MA 02110-1301, USA.
+ *****************************************************************************/
+
+package org.videolan.libvlc;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import org.videolan.libvlc.util.AndroidUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Accumulates the events of a VLCObject and delivers them as one batch per display frame.
+ *
+ * Frames are driven by the Choreographer when the Handler runs on the main thread (API 16+),
+ * and by a plain timer otherwise.
+ */
+final class EventBatcher<T extends VLCEvent> implements Runnable {
+    private static final long FRAME_INTERVAL_MS = 16;
+    private static final int SLOT_COUNT = 64;
+
+    private final VLCObject<T> mOwner;
+    private final VLCEvent.BatchListener<T> mListener;
+    private final Handler mHandler;
+    private final boolean mConflate;
+    private final FrameCallback mFrameCallback;
+
+    /* guarded by this */
+    private ArrayList<T> mPending = new ArrayList<T>();
+    private final int[] mConflatedIndexes = new int[SLOT_COUNT];
+    private boolean mScheduled = false;
+    private boolean mCancelled = false;
+    /* only accessed from the Handler thread */
+    private ArrayList<T> mDelivering = new ArrayList<T>();
+
+    EventBatcher(VLCObject<T> owner, VLCEvent.BatchListener<T> listener, Handler handler,
+                 boolean conflate) {
+        mOwner = owner;
+        mListener = listener;
+        mHandler = handler;
+        mConflate = conflate;
+        mFrameCallback = AndroidUtil.isJellyBeanOrLater && handler.getLooper() == Looper.getMainLooper()
+                ? new FrameCallback() : null;
+        Arrays.fill(mConflatedIndexes, -1);
+    }
+
+    /**
+     * Add an event to the next batch, called from the libvlc event thread.
+     */
+    void add(T event, boolean conflatable) {
+        T replaced = null;
+        final boolean schedule;
+        synchronized (this) {
+            if (mCancelled) {
+                replaced = event;
+                schedule = false;
+            } else {
+                final int slot = event.type & (SLOT_COUNT - 1);
+                if (mConflate && conflatable && mConflatedIndexes[slot] != -1) {
+                    replaced = mPending.set(mConflatedIndexes[slot], event);
+                } else {
+                    if (mConflate && conflatable)
+                        mConflatedIndexes[slot] = mPending.size();
+                    else if (mConflate) {
+                        /* later conflatable events go after this one, to keep the native order */
+                        Arrays.fill(mConflatedIndexes, -1);
+                    }
+                    mPending.add(event);
+                }
+                schedule = !mScheduled;
+                mScheduled = true;
+            }
+        }
+        if (replaced != null)
+            mOwner.recycleEvent(replaced);
+        if (schedule) {
+            if (mFrameCallback != null)
+                mHandler.post(this);
+            else
+                mHandler.postDelayed(this, FRAME_INTERVAL_MS);
+        }
+    }
+
+    /**
+     * Drop pending events and stop delivering batches.
+     */
+    void cancel() {
+        synchronized (this) {
+            mCancelled = true;
+        }
+        mHandler.removeCallbacks(this);
+    }
+
+    @Override
+    public void run() {
+        if (mFrameCallback != null)
+            mFrameCallback.post();
+        else
+            deliver();
+    }
+
+    private void deliver() {
+        synchronized (this) {
+            final ArrayList<T> events = mPending;
+            mPending = mDelivering;
+            mDelivering = events;
+            Arrays.fill(mConflatedIndexes, -1);
+            mScheduled = false;
+            if (mCancelled)
+                mDelivering.clear();
+        }
+        if (!mDelivering.isEmpty()) {
+            for (int i = 0; i < mDelivering.size(); ++i)
+                mOwner.recordLatency(mDelivering.get(i));
+            mListener.onEventBatch(mDelivering);
+        }
+        for (int i = 0; i < mDelivering.size(); ++i)
+            mOwner.recycleEvent(mDelivering.get(i));
+        mDelivering.clear();
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private class FrameCallback implements Choreographer.FrameCallback {
+        private void post() {
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            deliver();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*****************************************************************************
+ * EventLatencyHistogram.java
+ *****************************************************************************
+ * Copyright © 2017 VLC authors, VideoLAN and VideoLabs
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston MA 02110-1301, USA.
+ *****************************************************************************/
+
+package org.videolan.libvlc;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of the time spent by events between their reception from libvlc and their delivery
+ * to a listener, by event type.
+ *
+ * Latencies are counted in power of two buckets of nanoseconds: bucket n holds latencies in
+ * [2^(n-1), 2^n[. Memory is fixed and recording doesn't allocate nor lock, so that it can stay
+ * enabled in production. A histogram can be shared by several objects of the same class, see
+ * {@link MediaPlayer#setEventLatencyHistogram(EventLatencyHistogram)}.
+ */
+public final class EventLatencyHistogram {
+    public static final int BUCKET_COUNT = 40;
+    /* event types of a same class only differ by their lowest bits */
+    private static final int TYPE_COUNT = 64;
+
+    private final AtomicLongArray mBuckets = new AtomicLongArray(TYPE_COUNT * BUCKET_COUNT);
+    private final AtomicLongArray mMax = new AtomicLongArray(TYPE_COUNT);
+
+    private static int typeIndex(int eventType) {
+        return eventType & (TYPE_COUNT - 1);
+    }
+
+    void record(int eventType, long latencyNs) {
+        if (latencyNs < 0)
+            latencyNs = 0;
+        final int type = typeIndex(eventType);
+        final int bucket = Math.min(64 - Long.numberOfLeadingZeros(latencyNs), BUCKET_COUNT - 1);
+        mBuckets.incrementAndGet(type * BUCKET_COUNT + bucket);
+        for (;;) {
+            final long max = mMax.get(type);
+            if (latencyNs <= max || mMax.compareAndSet(type, max, latencyNs))
+                break;
+        }
+    }
+
+    /**
+     * Get the upper bound of a bucket in nanoseconds.
+     */
+    public static long getBucketUpperBound(int bucket) {
+        if (bucket < 0 || bucket >= BUCKET_COUNT)
+            throw new IndexOutOfBoundsException();
+        return bucket == BUCKET_COUNT - 1 ? Long.MAX_VALUE : 1L << bucket;
+    }
+
+    /**
+     * Copy the bucket counts of an event type.
+     *
+     * @param eventType event type, like {@link MediaPlayer.Event#TimeChanged}
+     * @param counts array of at least {@link #BUCKET_COUNT} elements
+     */
+    public void getBuckets(int eventType, long[] counts) {
+        final int type = typeIndex(eventType);
+        for (int i = 0; i < BUCKET_COUNT; ++i)
+            counts[i] = mBuckets.get(type * BUCKET_COUNT + i);
+    }
+
+    /**
+     * Get the number of events delivered for an event type.
+     */
+    public long getCount(int eventType) {
+        final int type = typeIndex(eventType);
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; ++i)
+            count += mBuckets.get(type * BUCKET_COUNT + i);
+        return count;
+    }
+
+    /**
+     * Get the maximum latency for an event type, in nanoseconds.
+     */
+    public long getMax(int eventType) {
+        return mMax.get(typeIndex(eventType));
+    }
+
+    /**
+     * Get an upper bound of a latency percentile for an event type.
+     *
+     * @param eventType event type
+     * @param percentile between 0 and 100
+     * @return latency in nanoseconds, or 0 if no events were delivered
+     */
+    public long getPercentile(int eventType, double percentile) {
+        if (percentile < 0 || percentile > 100)
+            throw new IllegalArgumentException("percentile should be between 0 and 100");
+        final int type = typeIndex(eventType);
+        final long count = getCount(eventType);
+        if (count == 0)
+            return 0;
+        final long rank = (long) Math.ceil(count * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; ++i) {
+            seen += mBuckets.get(type * BUCKET_COUNT + i);
+            if (seen >= rank && seen > 0)
+                return Math.min(getBucketUpperBound(i), getMax(eventType));
+        }
+        return getMax(eventType);
+    }
+
+    /**
+     * Clear all counts.
+     */
+    public void reset() {
+        for (int i = 0; i < mBuckets.length(); ++i)
+            mBuckets.set(i, 0);
+        for (int i = 0; i < mMax.length(); ++i)
+            mMax.set(i, 0);
+    }
+}
@@ -0,0 +1,250 @@
+/*****************************************************************************
+ * EventPublisher.java
+ *****************************************************************************
+ * Copyright © 2017 VLC authors, VideoLAN and VideoLabs
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston MA 02110-1301, USA.
+ *****************************************************************************/
+
+
+package org.videolan.libvlc;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+
+/**
+ * Publishes the events of a {@link VLCObject} as a stream with demand based backpressure, after
+ * java.util.concurrent.Flow (not available on Android).
+ *
+ * Each subscriber receives events in order on the publisher Executor, and only as many as it
+ * requested. While a subscriber doesn't request events, high frequency events (see
+ * {@link VLCObject#isConflatable(int)}) are merged: only the last one of each type is kept. If
+ * other events exceed the buffer capacity, the subscriber receives
+ * {@link Subscriber#onError(Throwable)} and is unsubscribed.
+ *
+ * The stream never completes: cancel the subscription before releasing the object.
+ */
+public final class EventPublisher<T extends VLCEvent> {
+    private static final int SLOT_COUNT = 64;
+
+    private final VLCObject<T> mOwner;
+    private final Executor mExecutor;
+    private final long mEventMask;
+    private final int mCapacity;
+
+    public interface Subscriber<T> {
+        /**
+         * Called before any other method, no events are received until
+         * {@link Subscription#request(long)} is called.
+         */
+        void onSubscribe(Subscription subscription);
+        void onNext(T item);
+        void onError(Throwable throwable);
+        void onComplete();
+    }
+
+    public interface Subscription {
+        /**
+         * Request n more events.
+         */
+        void request(long n);
+        /**
+         * Stop receiving events, possibly after a few pending ones.
+         */
+        void cancel();
+    }
+
+    EventPublisher(VLCObject<T> owner, Executor executor, long eventMask, int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity should be positive");
+        if (executor == null) {
+            final Handler handler = new Handler(Looper.getMainLooper());
+            executor = new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    handler.post(command);
+                }
+            };
+        }
+        mOwner = owner;
+        mExecutor = executor;
+        mEventMask = eventMask;
+        mCapacity = capacity;
+    }
+
+    /**
+     * Subscribe to the events of the object. Each call creates a new subscription.
+     */
+    public void subscribe(Subscriber<? super T> subscriber) {
+        if (subscriber == null)
+            throw new IllegalArgumentException("subscriber can't be null");
+        final EventSubscription<T> subscription = new EventSubscription<T>(this, subscriber);
+        subscriber.onSubscribe(subscription);
+        mOwner.addEventListener(subscription, VLCObject.DIRECT_EXECUTOR, false, mEventMask);
+        /* cancelled from onSubscribe(), or concurrently, before being registered */
+        if (subscription.isCancelled())
+            mOwner.removeEventListener(subscription);
+    }
+
+    private static final class EventSubscription<T extends VLCEvent>
+            implements Subscription, VLCEvent.Listener<T>, Runnable {
+        private final EventPublisher<T> mPublisher;
+        private final Subscriber<? super T> mSubscriber;
+
+        /* guarded by this */
+        private final T[] mQueue;
+        private long mHead = 0;
+        private long mTail = 0;
+        private final long[] mConflatedSequences = new long[SLOT_COUNT];
+        /* sequence following the last non conflatable event: conflating before it would
+         * deliver the new event ahead of it */
+        private long mConflationStart = 0;
+        private long mDemand = 0;
+        private Throwable mError = null;
+        private boolean mScheduled = false;
+        private boolean mCancelled = false;
+
+        private EventSubscription(EventPublisher<T> publisher, Subscriber<? super T> subscriber) {
+            mPublisher = publisher;
+            mSubscriber = subscriber;
+            /* T erases to VLCEvent */
+            @SuppressWarnings("unchecked")
+            final T[] queue = (T[]) new VLCEvent[publisher.mCapacity];
+            mQueue = queue;
+            Arrays.fill(mConflatedSequences, -1);
+        }
+
+        /* called from the libvlc event thread */
+        @Override
+        public void onEvent(T event) {
+            final VLCObject<T> owner = mPublisher.mOwner;
+            final boolean conflatable = owner.isConflatable(event.type);
+            /* recycled events are only valid during this call */
+            if (event.mRecyclable)
+                event = owner.createEvent(event.type, event.arg1, event.arg2, event.argf1);
+            final boolean schedule;
+            synchronized (this) {
+                if (mCancelled || mError != null)
+                    return;
+                final int slot = event.type & (SLOT_COUNT - 1);
+                final long conflatedSequence = mConflatedSequences[slot];
+                if (conflatable && conflatedSequence >= mHead
+                        && conflatedSequence >= mConflationStart) {
+                    mQueue[index(mConflatedSequences[slot])] = event;
+                } else if (mTail - mHead == mQueue.length) {
+                    mError = new IllegalStateException("subscriber too slow, "
+                            + mQueue.length + " events pending");
+                } else {
+                    if (conflatable)
+                        mConflatedSequences[slot] = mTail;
+                    mQueue[index(mTail++)] = event;
+                    if (!conflatable)
+                        mConflationStart = mTail;
+                }
+                schedule = scheduleLocked();
+            }
+            if (schedule)
+                mPublisher.mExecutor.execute(this);
+        }
+
+        @Override
+        public void request(long n) {
+            final boolean schedule;
+            synchronized (this) {
+                if (mCancelled)
+                    return;
+                if (n <= 0 && mError == null)
+                    mError = new IllegalArgumentException("request should be positive");
+                else if (n > 0)
+                    mDemand = n > Long.MAX_VALUE - mDemand ? Long.MAX_VALUE : mDemand + n;
+                schedule = scheduleLocked();
+            }
+            if (schedule)
+                mPublisher.mExecutor.execute(this);
+        }
+
+        private synchronized boolean isCancelled() {
+            return mCancelled;
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (this) {
+                if (mCancelled)
+                    return;
+                mCancelled = true;
+                clearLocked();
+            }
+            mPublisher.mOwner.removeEventListener(this);
+        }
+
+        /* called from the publisher Executor, one at a time */
+        @Override
+        public void run() {
+            for (;;) {
+                final T event;
+                synchronized (this) {
+                    if (mCancelled) {
+                        mScheduled = false;
+                        return;
+                    }
+                    if (mError != null)
+                        break;
+                    if (mDemand == 0 || mHead == mTail) {
+                        mScheduled = false;
+                        return;
+                    }
+                    final int index = index(mHead++);
+                    event = mQueue[index];
+                    mQueue[index] = null;
+                    if (mDemand != Long.MAX_VALUE)
+                        mDemand--;
+                }
+                mSubscriber.onNext(event);
+            }
+
+            final Throwable error;
+            synchronized (this) {
+                error = mError;
+                mCancelled = true;
+                mScheduled = false;
+                clearLocked();
+            }
+            mPublisher.mOwner.removeEventListener(this);
+            mSubscriber.onError(error);
+        }
+
+        private boolean scheduleLocked() {
+            if (mScheduled || mCancelled || (mError == null && (mDemand == 0 || mHead == mTail)))
+                return false;
+            mScheduled = true;
+            return true;
+        }
+
+        private void clearLocked() {
+            Arrays.fill(mQueue, null);
+            mHead = mTail = 0;
+            mConflationStart = 0;
+            Arrays.fill(mConflatedSequences, -1);
+        }
+
+        private int index(long sequence) {
+            return (int) (sequence % mQueue.length);
+        }
+    }
+}
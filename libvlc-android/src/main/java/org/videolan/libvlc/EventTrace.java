@@ -0,0 +1,145 @@
+/*****************************************************************************
+ * EventTrace.java
+ *****************************************************************************
+ * Copyright © 2017 VLC authors, VideoLAN and VideoLabs
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston MA 02110-1301, USA.
+ *****************************************************************************/
+
+
+package org.videolan.libvlc;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed size trace of the last events received from libvlc by a {@link VLCObject}, meant to be
+ * attached to crash or playback failure reports, see
+ * {@link MediaPlayer#setEventTrace(EventTrace)}.
+ *
+ * Events are stored in atomic primitive arrays: recording doesn't allocate nor lock, and dumping
+ * never blocks the libvlc event thread. Entries overwritten while being dumped are skipped.
+ */
+public final class EventTrace {
+    /* longs per entry: type and argf1 bits, arg1, arg2, timestamp */
+    private static final int STRIDE = 4;
+
+    private final int mMask;
+    /* volatile accesses, so that they can't be reordered with the sequence checks */
+    private final AtomicLongArray mEntries;
+    /* index of the event stored in each slot, -1 while it's being written */
+    private final AtomicLongArray mSequences;
+    private final AtomicLong mNext = new AtomicLong(0);
+
+    /**
+     * @param capacity number of events to keep, rounded up to a power of two
+     */
+    public EventTrace(int capacity) {
+        if (capacity <= 0 || capacity > (1 << 16))
+            throw new IllegalArgumentException("capacity should be between 1 and 65536");
+        final int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        mMask = size - 1;
+        mEntries = new AtomicLongArray(size * STRIDE);
+        mSequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; ++i)
+            mSequences.set(i, -1);
+    }
+
+    public int getCapacity() {
+        return mMask + 1;
+    }
+
+    void record(int type, long arg1, long arg2, float argf1) {
+        final long index = mNext.getAndIncrement();
+        final int slot = (int) (index & mMask);
+        final int offset = slot * STRIDE;
+        mSequences.set(slot, -1);
+        mEntries.set(offset, ((long) Float.floatToRawIntBits(argf1) << 32) | (type & 0xffffffffL));
+        mEntries.set(offset + 1, arg1);
+        mEntries.set(offset + 2, arg2);
+        mEntries.set(offset + 3, System.nanoTime());
+        mSequences.set(slot, index);
+    }
+
+    /**
+     * Get the total number of events recorded, including overwritten ones.
+     */
+    public long getRecordedCount() {
+        return mNext.get();
+    }
+
+    /**
+     * Copy the traced events, oldest first. Arrays should hold at least {@link #getCapacity()}
+     * elements.
+     *
+     * @param timestamps {@link System#nanoTime()} of the reception of each event
+     * @return number of events copied
+     */
+    public int copyTo(int[] types, long[] args1, long[] args2, float[] argsf1, long[] timestamps) {
+        final long end = mNext.get();
+        final long start = Math.max(0, end - (mMask + 1));
+        int count = 0;
+        for (long index = start; index < end; ++index) {
+            final int slot = (int) (index & mMask);
+            if (mSequences.get(slot) != index)
+                continue;
+            final int offset = slot * STRIDE;
+            final long typeAndArgf1 = mEntries.get(offset);
+            final long arg1 = mEntries.get(offset + 1);
+            final long arg2 = mEntries.get(offset + 2);
+            final long timestamp = mEntries.get(offset + 3);
+            if (mSequences.get(slot) != index)
+                continue;
+            types[count] = (int) typeAndArgf1;
+            args1[count] = arg1;
+            args2[count] = arg2;
+            argsf1[count] = Float.intBitsToFloat((int) (typeAndArgf1 >>> 32));
+            timestamps[count] = timestamp;
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Dump the traced events, oldest first, one per line, with their age in milliseconds.
+     */
+    public String dump() {
+        final int capacity = getCapacity();
+        final int[] types = new int[capacity];
+        final long[] args1 = new long[capacity];
+        final long[] args2 = new long[capacity];
+        final float[] argsf1 = new float[capacity];
+        final long[] timestamps = new long[capacity];
+        final int count = copyTo(types, args1, args2, argsf1, timestamps);
+        final long now = System.nanoTime();
+
+        final StringBuilder sb = new StringBuilder(count * 48);
+        for (int i = 0; i < count; ++i) {
+            sb.append('-').append((now - timestamps[i]) / 1000000).append("ms type=0x")
+                    .append(Integer.toHexString(types[i])).append(" arg1=").append(args1[i])
+                    .append(" arg2=").append(args2[i]).append(" argf1=").append(argsf1[i])
+                    .append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Forget the traced events.
+     */
+    public void clear() {
+        for (int i = 0; i <= mMask; ++i)
+            mSequences.set(i, -1);
+    }
+}
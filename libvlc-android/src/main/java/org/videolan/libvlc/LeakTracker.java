@@ -0,0 +1,188 @@
+/*****************************************************************************
+ * LeakTracker.java
+ *****************************************************************************
+ * Copyright © 2017 VLC authors, VideoLAN and VideoLabs
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston MA 02110-1301, USA.
+ *****************************************************************************/
+
+package org.videolan.libvlc;
+
+import android.util.Log;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Detects {@link Media}, {@link MediaList}, {@link MediaPlayer}... that become unreachable without
+ * being released, and so leak their native memory.
+ *
+ * Disabled by default. Once enabled, every new object is tracked, and the allocation site of one
+ * object out of {@code sampleRate} is recorded. Leaks are found when the garbage collector
+ * reclaims the Java objects, and are reported by {@link #getReport()}.
+ */
+public final class LeakTracker {
+    private final static String TAG = "LibVLC/LeakTracker";
+    private static final int MAX_SAMPLES = 32;
+
+    private static volatile boolean sEnabled = false;
+    private static int sSampleRate = 1;
+    private static int sTrackedCount = 0;
+
+    private static final ReferenceQueue<VLCObject<?>> sQueue = new ReferenceQueue<VLCObject<?>>();
+    /* keep records reachable until they are enqueued */
+    private static final Set<Record> sRecords = new HashSet<Record>();
+    private static final Map<String, Integer> sLeakCounts = new HashMap<String, Integer>();
+    private static final ArrayList<Leak> sSampledLeaks = new ArrayList<Leak>(MAX_SAMPLES);
+
+    private LeakTracker() {}
+
+    private static class Record extends PhantomReference<VLCObject<?>> {
+        private final String className;
+        private final AtomicInteger refCount;
+        private final Throwable allocationSite;
+
+        private Record(VLCObject<?> object, AtomicInteger refCount, Throwable allocationSite) {
+            super(object, sQueue);
+            this.className = object.getClass().getName();
+            this.refCount = refCount;
+            this.allocationSite = allocationSite;
+        }
+    }
+
+    /**
+     * An object that was garbage collected while still retained.
+     */
+    public static class Leak {
+        /** class name of the leaked object */
+        public final String className;
+        /** remaining ref count when the object was collected */
+        public final int refCount;
+        /** allocation site, or null if this object was not sampled */
+        public final Throwable allocationSite;
+
+        private Leak(String className, int refCount, Throwable allocationSite) {
+            this.className = className;
+            this.refCount = refCount;
+            this.allocationSite = allocationSite;
+        }
+    }
+
+    public static class Report {
+        /** number of objects currently tracked */
+        public final int trackedCount;
+        /** number of leaked objects by class name */
+        public final Map<String, Integer> leakCounts;
+        /** last leaks with an allocation site, at most 32 */
+        public final List<Leak> sampledLeaks;
+
+        private Report(int trackedCount, Map<String, Integer> leakCounts, List<Leak> sampledLeaks) {
+            this.trackedCount = trackedCount;
+            this.leakCounts = Collections.unmodifiableMap(leakCounts);
+            this.sampledLeaks = Collections.unmodifiableList(sampledLeaks);
+        }
+    }
+
+    /**
+     * Enable or disable the tracking of new objects.
+     *
+     * @param enabled true to track objects created from now on
+     * @param sampleRate record the allocation site of one object out of sampleRate, 0 to never
+     * record it. Capturing a stack trace is costly, so keep it high in production.
+     */
+    public static synchronized void setEnabled(boolean enabled, int sampleRate) {
+        if (sampleRate < 0)
+            throw new IllegalArgumentException("sampleRate can't be negative");
+        sSampleRate = sampleRate;
+        sEnabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * Get the leaks found so far. Leaks are only found once the garbage collector has reclaimed
+     * the leaked objects.
+     */
+    public static synchronized Report getReport() {
+        drainQueue();
+        return new Report(sRecords.size(), new HashMap<String, Integer>(sLeakCounts),
+                new ArrayList<Leak>(sSampledLeaks));
+    }
+
+    /**
+     * Forget the leaks found so far.
+     */
+    public static synchronized void reset() {
+        drainQueue();
+        sLeakCounts.clear();
+        sSampledLeaks.clear();
+    }
+
+    static Object track(VLCObject<?> object, AtomicInteger refCount) {
+        if (!sEnabled)
+            return null;
+        synchronized (LeakTracker.class) {
+            drainQueue();
+            final boolean sampled = sSampleRate > 0 && sTrackedCount++ % sSampleRate == 0;
+            final Record record = new Record(object, refCount,
+                    sampled ? new Throwable("allocation site") : null);
+            sRecords.add(record);
+            return record;
+        }
+    }
+
+    static void untrack(Object record) {
+        if (record == null)
+            return;
+        synchronized (LeakTracker.class) {
+            ((Record) record).clear();
+            sRecords.remove(record);
+        }
+    }
+
+    private static void drainQueue() {
+        Reference<? extends VLCObject<?>> reference;
+        while ((reference = sQueue.poll()) != null) {
+            final Record record = (Record) reference;
+            if (!sRecords.remove(record))
+                continue;
+            final int refCount = record.refCount.get();
+            if (refCount <= 0)
+                continue;
+
+            final Integer count = sLeakCounts.get(record.className);
+            sLeakCounts.put(record.className, count != null ? count + 1 : 1);
+            if (record.allocationSite != null) {
+                if (sSampledLeaks.size() == MAX_SAMPLES)
+                    sSampledLeaks.remove(0);
+                sSampledLeaks.add(new Leak(record.className, refCount, record.allocationSite));
+                Log.w(TAG, record.className + " leaked with refcount " + refCount,
+                        record.allocationSite);
+            } else
+                Log.w(TAG, record.className + " leaked with refcount " + refCount);
+        }
+    }
+}
@@ -22,12 +22,14 @@ package org.videolan.libvlc;
 
 import android.content.Context;
 import android.os.Build;
+import android.os.SystemClock;
 import android.util.Log;
 
-import org.videolan.libvlc.util.AndroidUtil;
-import org.videolan.libvlc.util.HWDecoderUtil;
-
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 @SuppressWarnings("unused, JniMissingFunction")
 public class LibVLC extends VLCObject<LibVLC.Event> {
@@ -40,64 +42,75 @@ public class LibVLC extends VLCObject<LibVLC.Event> {
         }
     }
 
+    /* Instances shared by obtain(), by options, guarded by itself */
+    private static final HashMap<LibVLCOptions, LibVLC> sInstances = new HashMap<LibVLCOptions, LibVLC>();
+    /* key in sInstances if this instance is shared */
+    private LibVLCOptions mInstanceKey = null;
+
     /**
      * Create a LibVLC withs options
      *
      * @param options
      */
     public LibVLC(Context context, ArrayList<String> options) {
+        this(context, LibVLCOptions.normalize(options != null ? options : new ArrayList<String>()));
+    }
+
+    /**
+     * Create a LibVLC with prebuilt options
+     *
+     * @param options see {@link LibVLCOptions.Builder}
+     */
+    public static LibVLC create(Context context, LibVLCOptions options) {
+        return new LibVLC(context, options.toArray());
+    }
+
+    private LibVLC(Context context, String[] options) {
         mAppContext = context.getApplicationContext();
         loadLibraries();
 
-        if (options == null)
-            options = new ArrayList<String>();
-        boolean setAout = true, setChroma = true;
-        // check if aout/vout options are already set
-        for (String option : options) {
-            if (option.startsWith("--aout="))
-                setAout = false;
-            if (option.startsWith("--android-display-chroma"))
-                setChroma = false;
-            if (!setAout && !setChroma)
-                break;
-        }
-
-        // set aout/vout options if they are not set
-        if (setAout || setChroma) {
-            if (setAout) {
-                final HWDecoderUtil.AudioOutput hwAout = HWDecoderUtil.getAudioOutputFromDevice();
-                if (hwAout == HWDecoderUtil.AudioOutput.OPENSLES)
-                    options.add("--aout=opensles");
-                else
-                    options.add("--aout=android_audiotrack");
-            }
-            if (setChroma) {
-                options.add("--android-display-chroma");
-                options.add("RV16");
-            }
-        }
+        final long start = StartupTrace.begin("nativeNew");
+        nativeNew(options, context.getDir("vlc", Context.MODE_PRIVATE).getAbsolutePath());
+        StartupTrace.end("nativeNew", start);
+    }
 
-        /* XXX: HACK to remove when we drop 2.3 support: force android_display vout */
-        if (!AndroidUtil.isHoneycombOrLater) {
-            boolean setVout = true;
-            for (String option : options) {
-                if (option.startsWith("--vout")) {
-                    setVout = false;
-                    break;
-                }
-            }
-            if (setVout)
-                options.add("--vout=android_display,none");
+    /**
+     * Get a LibVLC shared with other users of the same options, or create one.
+     *
+     * Creating a LibVLC loads every module and can take hundreds of milliseconds, whereas getting
+     * a shared one is immediate. The returned LibVLC is retained: call {@link #release()} once
+     * done, it's destroyed when all its users have released it. Options are compared after the
+     * default aout/vout options are added, in order.
+     *
+     * @param options see {@link LibVLCOptions.Builder}
+     */
+    public static LibVLC obtain(Context context, LibVLCOptions options) {
+        synchronized (sInstances) {
+            final LibVLC shared = sInstances.get(options);
+            if (shared != null && shared.retain())
+                return shared;
+            final LibVLC libVLC = create(context, options);
+            libVLC.mInstanceKey = options;
+            sInstances.put(options, libVLC);
+            return libVLC;
         }
+    }
 
-        nativeNew(options.toArray(new String[options.size()]), context.getDir("vlc", Context.MODE_PRIVATE).getAbsolutePath());
+    /**
+     * Get a LibVLC shared with other users of the same options, or create one.
+     *
+     * @param options see {@link #LibVLC(Context, ArrayList)}
+     * @see #obtain(Context, LibVLCOptions)
+     */
+    public static LibVLC obtain(Context context, ArrayList<String> options) {
+        return obtain(context, LibVLCOptions.fromList(options));
     }
 
     /**
      * Create a LibVLC
      */
     public LibVLC(Context context) {
-        this(context, null);
+        this(context, (ArrayList<String>) null);
     }
 
     /**
@@ -123,8 +136,19 @@ public class LibVLC extends VLCObject<LibVLC.Event> {
         return null;
     }
 
+    @Override
+    protected Event createEvent(int eventType, long arg1, long arg2, float argf1) {
+        return new Event(eventType);
+    }
+
     @Override
     protected void onReleaseNative() {
+        if (mInstanceKey != null) {
+            synchronized (sInstances) {
+                if (sInstances.get(mInstanceKey) == this)
+                    sInstances.remove(mInstanceKey);
+            }
+        }
         nativeRelease();
     }
 
@@ -144,42 +168,154 @@ public class LibVLC extends VLCObject<LibVLC.Event> {
     private native void nativeRelease();
     private native void nativeSetUserAgent(String name, String http);
 
+    /**
+     * Result of {@link #warmUp(Context, ArrayList)}
+     */
+    public static class WarmUpResult {
+        /** error that prevented libraries from loading or LibVLC from being created, or null */
+        public final Throwable error;
+        /** time spent warming up, in milliseconds */
+        public final long duration;
+
+        private WarmUpResult(Throwable error, long duration) {
+            this.error = error;
+            this.duration = duration;
+        }
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+    }
+
+    /**
+     * Load the native libraries on a background thread, so that the first LibVLC can be created
+     * without blocking the calling thread.
+     *
+     * Errors are returned in the result instead of ending the process, unlike the LibVLC
+     * constructors.
+     *
+     * @param context application context, only needed if options is not null
+     * @param options if not null, also create and release a LibVLC with these options, so that
+     *                its modules are loaded in memory
+     * @return a Future of the result, it never throws an ExecutionException
+     */
+    public static Future<WarmUpResult> warmUp(final Context context, final ArrayList<String> options) {
+        final FutureTask<WarmUpResult> task = new FutureTask<WarmUpResult>(new Callable<WarmUpResult>() {
+            @Override
+            public WarmUpResult call() {
+                final long start = SystemClock.elapsedRealtime();
+                Throwable error = tryLoadLibraries();
+                if (error == null && options != null) {
+                    try {
+                        new LibVLC(context, new ArrayList<String>(options)).release();
+                    } catch (Throwable t) {
+                        error = t;
+                    }
+                }
+                if (error != null)
+                    Log.e(TAG, "warm up failed: " + error);
+                return new WarmUpResult(error, SystemClock.elapsedRealtime() - start);
+            }
+        });
+        final Thread thread = new Thread(task, "LibVLC warm up");
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+        return task;
+    }
+
     private static boolean sLoaded = false;
+    private static Throwable sLoadError = null;
+    /* sLoadError comes from vlc or vlcjni, not from c++_shared */
+    private static boolean sVlcJniLoadFailed = false;
 
-    static synchronized void loadLibraries() {
-        if (sLoaded)
+    static void loadLibraries() {
+        final Throwable error = tryLoadLibraries();
+        if (error == null)
             return;
+        if (!sVlcJniLoadFailed) {
+            /* c++_shared failed: thrown to the caller */
+            if (error instanceof UnsatisfiedLinkError)
+                throw (UnsatisfiedLinkError) error;
+            throw (SecurityException) error;
+        }
+        if (error instanceof UnsatisfiedLinkError) {
+            Log.e(TAG, "Can't load vlcjni library: " + error);
+            /// FIXME Alert user
+            System.exit(1);
+        } else {
+            Log.e(TAG, "Encountered a security issue when loading vlcjni library: " + error);
+            /// FIXME Alert user
+            System.exit(1);
+        }
+    }
+
+    private static void loadLibrary(String name) {
+        final String phase = "loadLibrary " + name;
+        final long start = StartupTrace.begin(phase);
+        try {
+            System.loadLibrary(name);
+        } finally {
+            StartupTrace.end(phase, start);
+        }
+    }
+
+    /**
+     * Load the native libraries once.
+     *
+     * @return the error that prevented c++_shared or vlcjni from loading, or null
+     */
+    static synchronized Throwable tryLoadLibraries() {
+        if (sLoaded)
+            return sLoadError;
         sLoaded = true;
 
-        System.loadLibrary("c++_shared");
+        final long start = StartupTrace.begin("loadLibraries");
+        try {
+            loadLibrariesLocked();
+        } finally {
+            StartupTrace.end("loadLibraries", start);
+        }
+        return sLoadError;
+    }
+
+    private static void loadLibrariesLocked() {
+        try {
+            loadLibrary("c++_shared");
+        } catch (UnsatisfiedLinkError ule) {
+            sLoadError = ule;
+            return;
+        } catch (SecurityException se) {
+            sLoadError = se;
+            return;
+        }
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.GINGERBREAD_MR1
                 && Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
             try {
                 if (Build.VERSION.SDK_INT <= Build.VERSION_CODES.HONEYCOMB_MR1)
-                    System.loadLibrary("anw.10");
+                    loadLibrary("anw.10");
                 else if (Build.VERSION.SDK_INT <= Build.VERSION_CODES.HONEYCOMB_MR2)
-                    System.loadLibrary("anw.13");
+                    loadLibrary("anw.13");
                 else if (Build.VERSION.SDK_INT <= Build.VERSION_CODES.JELLY_BEAN_MR1)
-                    System.loadLibrary("anw.14");
+                    loadLibrary("anw.14");
                 else if (Build.VERSION.SDK_INT <= Build.VERSION_CODES.KITKAT_WATCH)
-                    System.loadLibrary("anw.18");
+                    loadLibrary("anw.18");
                 else
-                    System.loadLibrary("anw.21");
+                    loadLibrary("anw.21");
             } catch (Throwable t) {
                 Log.d(TAG, "anw library not loaded");
             }
 
             try {
                 if (Build.VERSION.SDK_INT <= Build.VERSION_CODES.GINGERBREAD_MR1)
-                    System.loadLibrary("iomx.10");
+                    loadLibrary("iomx.10");
                 else if (Build.VERSION.SDK_INT <= Build.VERSION_CODES.HONEYCOMB_MR2)
-                    System.loadLibrary("iomx.13");
+                    loadLibrary("iomx.13");
                 else if (Build.VERSION.SDK_INT <= Build.VERSION_CODES.JELLY_BEAN_MR1)
-                    System.loadLibrary("iomx.14");
+                    loadLibrary("iomx.14");
                 else if (Build.VERSION.SDK_INT <= Build.VERSION_CODES.JELLY_BEAN_MR2)
-                    System.loadLibrary("iomx.18");
+                    loadLibrary("iomx.18");
                 else if (Build.VERSION.SDK_INT <= Build.VERSION_CODES.KITKAT)
-                    System.loadLibrary("iomx.19");
+                    loadLibrary("iomx.19");
             } catch (Throwable t) {
                 // No need to warn if it isn't found, when we intentionally don't build these except for debug
                 if (Build.VERSION.SDK_INT <= Build.VERSION_CODES.ICE_CREAM_SANDWICH_MR1)
@@ -188,16 +324,14 @@ public class LibVLC extends VLCObject<LibVLC.Event> {
         }
 
         try {
-            System.loadLibrary("vlc");
-            System.loadLibrary("vlcjni");
+            loadLibrary("vlc");
+            loadLibrary("vlcjni");
         } catch (UnsatisfiedLinkError ule) {
-            Log.e(TAG, "Can't load vlcjni library: " + ule);
-            /// FIXME Alert user
-            System.exit(1);
+            sLoadError = ule;
+            sVlcJniLoadFailed = true;
         } catch (SecurityException se) {
-            Log.e(TAG, "Encountered a security issue when loading vlcjni library: " + se);
-            /// FIXME Alert user
-            System.exit(1);
+            sLoadError = se;
+            sVlcJniLoadFailed = true;
         }
     }
 }
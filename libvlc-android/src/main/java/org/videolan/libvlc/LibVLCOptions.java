@@ -0,0 +1,208 @@
+/*****************************************************************************
+ * LibVLCOptions.java
+ *****************************************************************************
+ * Copyright © 2017 VLC authors, VideoLAN and VideoLabs
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston MA 02110-1301, USA.
+ *****************************************************************************/
+
+
+package org.videolan.libvlc;
+
+import org.videolan.libvlc.util.AndroidUtil;
+import org.videolan.libvlc.util.HWDecoderUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable set of LibVLC options.
+ *
+ * Options are validated and completed with the default aout/vout options once, when built, so
+ * creating a LibVLC from a LibVLCOptions with
+ * {@link LibVLC#create(android.content.Context, LibVLCOptions)} doesn't scan them again.
+ * LibVLCOptions are cheap to compare, and are used as keys by
+ * {@link LibVLC#obtain(android.content.Context, LibVLCOptions)}.
+ */
+public final class LibVLCOptions {
+    private final String[] mOptions;
+    private final int mHashCode;
+
+    /* the device audio output doesn't change, look it up only once */
+    private static volatile HWDecoderUtil.AudioOutput sAudioOutput = null;
+
+    private LibVLCOptions(String[] options) {
+        mOptions = options;
+        mHashCode = Arrays.hashCode(options);
+    }
+
+    /**
+     * Build a LibVLCOptions from a list of options, see {@link LibVLC#LibVLC(android.content.Context, ArrayList)}
+     *
+     * Options are taken as is, like by that constructor, whereas {@link Builder#addOption(String)}
+     * rejects empty ones.
+     */
+    public static LibVLCOptions fromList(List<String> options) {
+        return new LibVLCOptions(normalize(options != null ? new ArrayList<String>(options)
+                : new ArrayList<String>()));
+    }
+
+    public static class Builder {
+        private final ArrayList<String> mOptions = new ArrayList<String>();
+
+        /**
+         * Add a command line option, like "--network-caching=1000" or "-vv"
+         */
+        public Builder addOption(String option) {
+            if (option == null || option.isEmpty())
+                throw new IllegalArgumentException("option can't be null or empty");
+            mOptions.add(option);
+            return this;
+        }
+
+        /**
+         * Add command line options, in order
+         */
+        public Builder addOptions(Collection<String> options) {
+            for (String option : options)
+                addOption(option);
+            return this;
+        }
+
+        /**
+         * Set the audio output module, like "opensles" or "android_audiotrack". If not set, the
+         * best one for the device is used.
+         */
+        public Builder setAudioOutput(String aout) {
+            return addOption("--aout=" + aout);
+        }
+
+        /**
+         * Set the chroma of the android_display video output, like "RV32". RV16 if not set.
+         */
+        public Builder setChroma(String chroma) {
+            addOption("--android-display-chroma");
+            return addOption(chroma);
+        }
+
+        /**
+         * Set the video output modules, like "android_display,none"
+         */
+        public Builder setVideoOutput(String vout) {
+            return addOption("--vout=" + vout);
+        }
+
+        public LibVLCOptions build() {
+            final ArrayList<String> options = new ArrayList<String>(mOptions.size() + 3);
+            options.addAll(mOptions);
+            return new LibVLCOptions(normalize(options));
+        }
+    }
+
+    /**
+     * Add the default aout/vout options if they are not set
+     *
+     * @param options options completed in place
+     * @return the final options
+     */
+    static String[] normalize(ArrayList<String> options) {
+        final long start = StartupTrace.begin("options");
+        boolean setAout = true, setChroma = true;
+        // check if aout/vout options are already set
+        for (String option : options) {
+            if (option.startsWith("--aout="))
+                setAout = false;
+            if (option.startsWith("--android-display-chroma"))
+                setChroma = false;
+            if (!setAout && !setChroma)
+                break;
+        }
+
+        // set aout/vout options if they are not set
+        if (setAout || setChroma) {
+            if (setAout) {
+                if (getAudioOutput() == HWDecoderUtil.AudioOutput.OPENSLES)
+                    options.add("--aout=opensles");
+                else
+                    options.add("--aout=android_audiotrack");
+            }
+            if (setChroma) {
+                options.add("--android-display-chroma");
+                options.add("RV16");
+            }
+        }
+
+        /* XXX: HACK to remove when we drop 2.3 support: force android_display vout */
+        if (!AndroidUtil.isHoneycombOrLater) {
+            boolean setVout = true;
+            for (String option : options) {
+                if (option.startsWith("--vout")) {
+                    setVout = false;
+                    break;
+                }
+            }
+            if (setVout)
+                options.add("--vout=android_display,none");
+        }
+        StartupTrace.end("options", start);
+        return options.toArray(new String[options.size()]);
+    }
+
+    private static HWDecoderUtil.AudioOutput getAudioOutput() {
+        HWDecoderUtil.AudioOutput aout = sAudioOutput;
+        if (aout == null) {
+            final long start = StartupTrace.begin("getAudioOutputFromDevice");
+            aout = HWDecoderUtil.getAudioOutputFromDevice();
+            StartupTrace.end("getAudioOutputFromDevice", start);
+            sAudioOutput = aout;
+        }
+        return aout;
+    }
+
+    /**
+     * Get the final options, including the default ones.
+     */
+    public List<String> getOptions() {
+        return Collections.unmodifiableList(Arrays.asList(mOptions));
+    }
+
+    /* not copied: LibVLC doesn't modify it */
+    String[] toArray() {
+        return mOptions;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof LibVLCOptions))
+            return false;
+        final LibVLCOptions other = (LibVLCOptions) o;
+        return mHashCode == other.mHashCode && Arrays.equals(mOptions, other.mOptions);
+    }
+
+    @Override
+    public int hashCode() {
+        return mHashCode;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(mOptions);
+    }
+}
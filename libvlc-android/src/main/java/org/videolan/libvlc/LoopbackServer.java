@@ -0,0 +1,357 @@
+/*****************************************************************************
+ * LoopbackServer.java
+ *****************************************************************************
+ * Copyright © 2017 VLC authors, VideoLAN and VideoLabs
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston MA 02110-1301, USA.
+ *****************************************************************************/
+
+
+package org.videolan.libvlc;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP server bound to the loopback interface, serving sources that libvlc can't open directly as
+ * http://127.0.0.1:port/token MRLs.
+ *
+ * Byte ranges are supported, so libvlc can seek. Each source is only reachable with a random
+ * token, and the server stops when no source is registered anymore.
+ *
+ * Connections are served by a bounded pool: a connection over {@link #MAX_CONNECTIONS} is closed
+ * right away, and an idle connection is closed after {@link #READ_TIMEOUT_MS}.
+ */
+final class LoopbackServer implements Runnable {
+    private static final int MAX_HEADER_LENGTH = 8192;
+    /* libvlc opens one or two connections per playing Media, more when seeking */
+    private static final int MAX_CONNECTIONS = 16;
+    private static final int READ_TIMEOUT_MS = 30000;
+    private static final long THREAD_KEEP_ALIVE_MS = 5000;
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    /**
+     * Content served by the server, read concurrently by several connections.
+     */
+    interface Source {
+        /**
+         * @return size in bytes, or -1 if unknown
+         */
+        long getSize() throws IOException;
+
+        /**
+         * Write count bytes from position to target.
+         *
+         * @param count number of bytes, Long.MAX_VALUE to write until the end of a source of
+         *              unknown size
+         * @return number of bytes written, less than count at the end of the source
+         */
+        long transferTo(long position, long count, WritableByteChannel target) throws IOException;
+
+        /**
+         * Called when the source is unregistered, connections still reading it fail.
+         */
+        void close();
+    }
+
+    private static LoopbackServer sInstance = null;
+    private static final SecureRandom sRandom = new SecureRandom();
+
+    private final ServerSocketChannel mServerChannel;
+    private final ThreadPoolExecutor mExecutor;
+    /* guarded by LoopbackServer.class */
+    private final HashMap<String, Source> mSources = new HashMap<String, Source>();
+
+    private LoopbackServer() throws IOException {
+        mServerChannel = ServerSocketChannel.open();
+        mServerChannel.socket().bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+        mExecutor = new ThreadPoolExecutor(0, MAX_CONNECTIONS, THREAD_KEEP_ALIVE_MS,
+                TimeUnit.MILLISECONDS, new SynchronousQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                final Thread thread = new Thread(runnable, "LibVLC loopback connection");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        final Thread thread = new Thread(this, "LibVLC loopback server");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Serve a source.
+     *
+     * @return the MRL of the source
+     */
+    static String register(Source source) throws IOException {
+        final byte[] bytes = new byte[16];
+        sRandom.nextBytes(bytes);
+        final StringBuilder token = new StringBuilder(32);
+        for (byte b : bytes)
+            token.append(String.format(Locale.US, "%02x", b & 0xff));
+
+        synchronized (LoopbackServer.class) {
+            if (sInstance == null)
+                sInstance = new LoopbackServer();
+            sInstance.mSources.put(token.toString(), source);
+            return "http://127.0.0.1:" + sInstance.mServerChannel.socket().getLocalPort() + "/" + token;
+        }
+    }
+
+    /**
+     * Stop serving a source, and close it.
+     */
+    static void unregister(String mrl) {
+        final String token = mrl.substring(mrl.lastIndexOf('/') + 1);
+        final Source source;
+        synchronized (LoopbackServer.class) {
+            if (sInstance == null)
+                return;
+            source = sInstance.mSources.remove(token);
+            if (sInstance.mSources.isEmpty()) {
+                try {
+                    sInstance.mServerChannel.close();
+                } catch (IOException ignored) {}
+                /* connections still running fail on their closed source */
+                sInstance.mExecutor.shutdown();
+                sInstance = null;
+            }
+        }
+        if (source != null)
+            source.close();
+    }
+
+    private static Source getSource(LoopbackServer server, String token) {
+        synchronized (LoopbackServer.class) {
+            return server.mSources.get(token);
+        }
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            final SocketChannel channel;
+            try {
+                channel = mServerChannel.accept();
+            } catch (IOException e) {
+                /* closed by unregister() */
+                return;
+            }
+            try {
+                mExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        serve(channel);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                /* too many connections, or stopped */
+                closeQuietly(channel);
+            }
+        }
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {}
+    }
+
+    private void serve(SocketChannel channel) {
+        try {
+            channel.socket().setSoTimeout(READ_TIMEOUT_MS);
+            final HeaderReader reader = new HeaderReader(channel.socket().getInputStream());
+            boolean keepAlive = true;
+            while (keepAlive) {
+                final String header = reader.read();
+                if (header == null)
+                    break;
+                keepAlive = handleRequest(channel, header);
+            }
+        } catch (IOException e) {
+            /* libvlc closed the connection, when seeking for example, or timed out */
+        } finally {
+            closeQuietly(channel);
+        }
+    }
+
+    /**
+     * Reads request headers of a connection, by chunks. Bytes read past a header, like a
+     * pipelined request, are kept for the next one.
+     */
+    private static final class HeaderReader {
+        private final InputStream mInput;
+        private final byte[] mBuffer = new byte[MAX_HEADER_LENGTH];
+        /* bytes in mBuffer, and length of the last header returned */
+        private int mLength = 0;
+        private int mHeaderLength = 0;
+
+        private HeaderReader(InputStream input) {
+            mInput = input;
+        }
+
+        /**
+         * Read a request header, up to the empty line.
+         *
+         * @return header, or null on end of stream or too long header
+         */
+        private String read() throws IOException {
+            if (mHeaderLength > 0) {
+                mLength -= mHeaderLength;
+                System.arraycopy(mBuffer, mHeaderLength, mBuffer, 0, mLength);
+                mHeaderLength = 0;
+            }
+            int searched = 0;
+            while (true) {
+                for (int i = searched; i + 3 < mLength; ++i) {
+                    if (mBuffer[i] == '\r' && mBuffer[i + 1] == '\n' && mBuffer[i + 2] == '\r'
+                            && mBuffer[i + 3] == '\n') {
+                        mHeaderLength = i + 4;
+                        return new String(mBuffer, 0, mHeaderLength, ASCII);
+                    }
+                }
+                searched = Math.max(0, mLength - 3);
+                if (mLength == mBuffer.length)
+                    return null;
+                final int read = mInput.read(mBuffer, mLength, mBuffer.length - mLength);
+                if (read == -1)
+                    return null;
+                mLength += read;
+            }
+        }
+    }
+
+    /**
+     * @return true if the connection can be kept alive
+     */
+    private boolean handleRequest(SocketChannel channel, String header) throws IOException {
+        final String[] lines = header.split("\r\n");
+        final String[] requestLine = lines[0].split(" ");
+        if (requestLine.length < 3 || !requestLine[1].startsWith("/")) {
+            writeStatus(channel, "400 Bad Request", 0, null);
+            return false;
+        }
+        final String method = requestLine[0];
+        final boolean head = method.equals("HEAD");
+        if (!head && !method.equals("GET")) {
+            writeStatus(channel, "405 Method Not Allowed", 0, null);
+            return false;
+        }
+        final Source source = getSource(this, requestLine[1].substring(1));
+        if (source == null) {
+            writeStatus(channel, "404 Not Found", 0, null);
+            return false;
+        }
+
+        boolean keepAlive = requestLine[2].equals("HTTP/1.1");
+        String range = null;
+        for (int i = 1; i < lines.length; ++i) {
+            final String line = lines[i].toLowerCase(Locale.US);
+            if (line.startsWith("range:"))
+                range = line.substring(6).trim();
+            else if (line.startsWith("connection:"))
+                keepAlive = !line.contains("close");
+        }
+
+        final long size = source.getSize();
+        if (size < 0) {
+            /* unknown size: no ranges, the end of the body is the end of the connection */
+            writeStatus(channel, "200 OK", -1, null);
+            if (head)
+                return false;
+            long position = 0;
+            long written;
+            while ((written = source.transferTo(position, Long.MAX_VALUE, channel)) > 0)
+                position += written;
+            return false;
+        }
+        long start = 0, end = size - 1;
+        if (range != null && range.startsWith("bytes=") && range.indexOf(',') == -1) {
+            final String spec = range.substring(6);
+            final int dash = spec.indexOf('-');
+            try {
+                if (dash == 0) {
+                    /* suffix range: last n bytes */
+                    start = Math.max(0, size - Long.parseLong(spec.substring(1)));
+                } else if (dash > 0) {
+                    start = Long.parseLong(spec.substring(0, dash));
+                    if (dash < spec.length() - 1)
+                        end = Math.min(end, Long.parseLong(spec.substring(dash + 1)));
+                }
+            } catch (NumberFormatException e) {
+                range = null;
+            }
+            if (start >= size || start > end) {
+                writeStatus(channel, "416 Range Not Satisfiable", 0, "Content-Range: bytes */" + size);
+                return keepAlive;
+            }
+        } else
+            range = null;
+
+        final long length = end - start + 1;
+        if (range != null)
+            writeStatus(channel, "206 Partial Content", length,
+                    "Content-Range: bytes " + start + "-" + end + "/" + size);
+        else
+            writeStatus(channel, "200 OK", length, null);
+        if (head)
+            return keepAlive;
+
+        long position = start;
+        while (position <= end) {
+            final long written = source.transferTo(position, end - position + 1, channel);
+            if (written <= 0)
+                return false; /* source shorter than announced */
+            position += written;
+        }
+        return keepAlive;
+    }
+
+    private static void writeStatus(SocketChannel channel, String status, long contentLength,
+                                    String extraHeader) throws IOException {
+        final StringBuilder sb = new StringBuilder(256);
+        sb.append("HTTP/1.1 ").append(status).append("\r\n");
+        sb.append("Content-Type: application/octet-stream\r\n");
+        if (contentLength >= 0) {
+            sb.append("Accept-Ranges: bytes\r\n");
+            sb.append("Content-Length: ").append(contentLength).append("\r\n");
+        } else {
+            sb.append("Accept-Ranges: none\r\n");
+            sb.append("Connection: close\r\n");
+        }
+        if (extraHeader != null)
+            sb.append(extraHeader).append("\r\n");
+        sb.append("\r\n");
+        final ByteBuffer buffer = ByteBuffer.wrap(sb.toString().getBytes(ASCII));
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+    }
+}
@@ -20,6 +20,7 @@
 
 package org.videolan.libvlc;
 
+import android.content.res.AssetFileDescriptor;
 import android.net.Uri;
 import android.support.annotation.Nullable;
 
@@ -28,6 +29,15 @@ import org.videolan.libvlc.util.HWDecoderUtil;
 import org.videolan.libvlc.util.VLCUtil;
 
 import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @SuppressWarnings("unused, JniMissingFunction")
 public class Media extends VLCObject<Media.Event> {
@@ -48,6 +58,9 @@ public class Media extends VLCObject<Media.Event> {
         protected Event(int type, long arg1) {
             super(type, arg1);
         }
+        protected Event(int type, long arg1, long arg2, float argf1) {
+            super(type, arg1, arg2, argf1);
+        }
 
         public int getMetaId() {
             return (int) arg1;
@@ -196,7 +209,7 @@ public class Media extends VLCObject<Media.Event> {
     }
 
     @SuppressWarnings("unused") /* Used from JNI */
-    private static Track createAudioTrackFromNative(String codec, String originalCodec, int id, int profile,
+    static Track createAudioTrackFromNative(String codec, String originalCodec, int id, int profile,
             int level, int bitrate, String language, String description,
             int channels, int rate) {
         return new AudioTrack(codec, originalCodec, id, profile,
@@ -260,7 +273,7 @@ public class Media extends VLCObject<Media.Event> {
     }
 
     @SuppressWarnings("unused") /* Used from JNI */
-    private static Track createVideoTrackFromNative(String codec, String originalCodec, int id, int profile,
+    static Track createVideoTrackFromNative(String codec, String originalCodec, int id, int profile,
             int level, int bitrate, String language, String description,
             int height, int width, int sarNum, int sarDen, int frameRateNum, int frameRateDen,
             int orientation, int projection) {
@@ -284,7 +297,7 @@ public class Media extends VLCObject<Media.Event> {
     }
 
     @SuppressWarnings("unused") /* Used from JNI */
-    private static Track createSubtitleTrackFromNative(String codec, String originalCodec, int id, int profile,
+    static Track createSubtitleTrackFromNative(String codec, String originalCodec, int id, int profile,
             int level, int bitrate, String language, String description,
             String encoding) {
         return new SubtitleTrack(codec, originalCodec, id, profile,
@@ -303,7 +316,7 @@ public class Media extends VLCObject<Media.Event> {
     }
 
     @SuppressWarnings("unused") /* Used from JNI */
-    private static Track createUnknownTrackFromNative(String codec, String originalCodec, int id, int profile,
+    static Track createUnknownTrackFromNative(String codec, String originalCodec, int id, int profile,
                                                       int level, int bitrate, String language, String description) {
         return new UnknownTrack(codec, originalCodec, id, profile,
                 level, bitrate, language, description);
@@ -411,12 +424,20 @@ public class Media extends VLCObject<Media.Event> {
     private Uri mUri = null;
     private MediaList mSubItems = null;
     private int mParseStatus = PARSE_STATUS_INIT;
+    /* guarded by itself, not by this Media, so that events don't contend with other getters */
     private final String mNativeMetas[] = new String[Meta.MAX];
-    private Track mNativeTracks[] = null;
-    private long mDuration = -1;
-    private int mState = -1;
-    private int mType = -1;
+    private volatile Track mNativeTracks[] = null;
+    private volatile long mDuration = -1;
+    private volatile int mState = -1;
+    private volatile int mType = -1;
+    /* snapshot published once parsed, and its version, incremented when it's invalidated */
+    private volatile MediaInfo mInfo = null;
+    private final AtomicInteger mInfoVersion = new AtomicInteger();
+    /* status of the last ParsedChanged event, not to be confused with mParseStatus */
+    private volatile int mLastParsedStatus = 0;
     private boolean mCodecOptionSet = false;
+    /* MRL served by the LoopbackServer, or null */
+    private String mLoopbackMrl = null;
 
     /**
      * Create a Media from libVLC and a local path starting with '/'.
@@ -454,6 +475,222 @@ public class Media extends VLCObject<Media.Event> {
         mUri = VLCUtil.UriFromMrl(nativeGetMrl());
     }
 
+    /**
+     * Create a Media from libVLC and a region of a FileDescriptor, like an uncompressed asset
+     * of an APK.
+     *
+     * The region is served to libvlc from the loopback interface, without being copied.
+     * The FileDescriptor is not closed, and should stay valid until this Media is released.
+     *
+     * @param libVLC a valid LibVLC
+     * @param fd file descriptor object
+     * @param offset offset of the region in bytes
+     * @param length length of the region in bytes, or -1 for the rest of the file
+     */
+    public Media(LibVLC libVLC, FileDescriptor fd, long offset, long length) {
+        super(libVLC);
+        if (fd == null || offset < 0)
+            throw new IllegalArgumentException("fd can't be null and offset should be positive");
+        /* not closed: closing the channel would close fd */
+        final FileChannel channel = new FileInputStream(fd).getChannel();
+        try {
+            if (length < 0)
+                length = channel.size() - offset;
+            mLoopbackMrl = LoopbackServer.register(new FileRegionSource(channel, offset, length));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("can't serve the file descriptor: " + e);
+        }
+        newFromLoopbackMrl(libVLC);
+    }
+
+    /**
+     * Create a Media from libVLC and an AssetFileDescriptor, see
+     * {@link #Media(LibVLC, FileDescriptor, long, long)}. The asset should be stored uncompressed.
+     *
+     * @param libVLC a valid LibVLC
+     * @param afd asset file descriptor, should not be closed until this Media is released
+     */
+    public Media(LibVLC libVLC, AssetFileDescriptor afd) {
+        this(libVLC, afd.getFileDescriptor(), afd.getStartOffset(), afd.getLength());
+    }
+
+    /**
+     * Create a Media from libVLC and a MediaSource implemented by the application.
+     *
+     * The source is read into a reused direct ByteBuffer, and served to libvlc from the loopback
+     * interface. It's opened on the first read, and closed once this Media is released.
+     *
+     * @param libVLC a valid LibVLC
+     * @param source see {@link MediaSource}
+     */
+    public Media(LibVLC libVLC, MediaSource source) {
+        super(libVLC);
+        if (source == null)
+            throw new IllegalArgumentException("source can't be null");
+        try {
+            mLoopbackMrl = LoopbackServer.register(new CallbackSource(source));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("can't serve the source: " + e);
+        }
+        newFromLoopbackMrl(libVLC);
+    }
+
+    /* the caller never gets this Media if it can't be created, so stop serving its source */
+    private void newFromLoopbackMrl(LibVLC libVLC) {
+        boolean created = false;
+        try {
+            nativeNewFromLocation(libVLC, mLoopbackMrl);
+            mUri = VLCUtil.UriFromMrl(nativeGetMrl());
+            created = true;
+        } finally {
+            if (!created) {
+                LoopbackServer.unregister(mLoopbackMrl);
+                mLoopbackMrl = null;
+            }
+        }
+    }
+
+    /* package-private for tests */
+    static class CallbackSource implements LoopbackServer.Source {
+        private static final int BUFFER_SIZE = 64 * 1024;
+        /* a source returning no data is retried with a growing delay, for about 5 seconds */
+        private static final int MAX_EMPTY_READS = 60;
+        private static final long MAX_EMPTY_READ_DELAY_MS = 100;
+
+        private final MediaSource mSource;
+        /* guarded by this */
+        private long mSize = -1;
+        private long mPosition = 0;
+        private boolean mOpened = false;
+        private boolean mClosed = false;
+        /* direct buffers of finished transfers, one per connection at most */
+        private final ArrayDeque<ByteBuffer> mFreeBuffers = new ArrayDeque<ByteBuffer>();
+
+        CallbackSource(MediaSource source) {
+            mSource = source;
+        }
+
+        private void openLocked() throws IOException {
+            if (mClosed)
+                throw new IOException("source closed");
+            if (mOpened)
+                return;
+            mSize = mSource.open();
+            mOpened = true;
+        }
+
+        @Override
+        public synchronized long getSize() throws IOException {
+            openLocked();
+            return mSize;
+        }
+
+        private synchronized ByteBuffer obtainBuffer() {
+            final ByteBuffer buffer = mFreeBuffers.poll();
+            return buffer != null ? buffer : ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+
+        private synchronized void recycleBuffer(ByteBuffer buffer) {
+            if (!mClosed)
+                mFreeBuffers.add(buffer);
+        }
+
+        /* the source has a single position: only a seek and a read are done under the lock, the
+         * chunk is then written without it, so that a slow connection doesn't block others */
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target)
+                throws IOException {
+            final ByteBuffer buffer = obtainBuffer();
+            try {
+                long written = 0;
+                int emptyReads = 0;
+                while (written < count) {
+                    buffer.clear();
+                    if (count - written < buffer.capacity())
+                        buffer.limit((int) (count - written));
+                    final int read;
+                    synchronized (this) {
+                        openLocked();
+                        if (position + written != mPosition) {
+                            mSource.seek(position + written);
+                            mPosition = position + written;
+                        }
+                        read = mSource.read(buffer);
+                        if (read > 0)
+                            mPosition += read;
+                    }
+                    if (read < 0)
+                        break;
+                    if (read == 0) {
+                        if (++emptyReads > MAX_EMPTY_READS)
+                            throw new IOException("source returns no data");
+                        waitForData(emptyReads);
+                        continue;
+                    }
+                    emptyReads = 0;
+                    buffer.flip();
+                    while (buffer.hasRemaining())
+                        target.write(buffer);
+                    written += read;
+                }
+                return written;
+            } finally {
+                recycleBuffer(buffer);
+            }
+        }
+
+        private static void waitForData(int emptyReads) throws IOException {
+            try {
+                Thread.sleep(Math.min(1L << Math.min(emptyReads, 16), MAX_EMPTY_READ_DELAY_MS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while waiting for data");
+            }
+        }
+
+        @Override
+        public synchronized void close() {
+            if (mClosed)
+                return;
+            mClosed = true;
+            if (mOpened)
+                mSource.close();
+            mFreeBuffers.clear();
+        }
+    }
+
+    /* package-private for tests */
+    static class FileRegionSource implements LoopbackServer.Source {
+        private final FileChannel mChannel;
+        private final long mOffset;
+        private final long mLength;
+
+        FileRegionSource(FileChannel channel, long offset, long length) {
+            mChannel = channel;
+            mOffset = offset;
+            mLength = length;
+        }
+
+        @Override
+        public long getSize() {
+            return mLength;
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target)
+                throws IOException {
+            if (position >= mLength)
+                return 0;
+            /* positional, so that connections don't share a file position; sendfile on Linux */
+            return mChannel.transferTo(mOffset + position, Math.min(count, mLength - position),
+                    target);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
     /**
      *
      * @param ml Should not be released and locked
@@ -473,26 +710,88 @@ public class Media extends VLCObject<Media.Event> {
         super.setEventListener(listener);
     }
 
+    /**
+     * Set an event listener that only receives the event types set in eventMask.
+     * Events are sent via the android main thread.
+     *
+     * @param listener see {@link EventListener}
+     * @param eventMask event types to receive, see {@link Event#maskOf(int...)}
+     */
+    public void setEventListener(EventListener listener, long eventMask) {
+        super.setEventListener(listener, null, false, eventMask);
+    }
+
+    /**
+     * Set an event listener running on an Executor. Events are delivered in order, one at a time.
+     *
+     * @param listener see {@link EventListener}
+     * @param executor Executor running the listener, see {@link #DIRECT_EXECUTOR}
+     */
+    public void setEventListenerOnExecutor(EventListener listener, Executor executor) {
+        super.setEventListenerOnExecutor(listener, executor, false, Event.MASK_ALL);
+    }
+
+    /**
+     * Add an event listener, in addition to the one set by setEventListener(). Each listener
+     * has its own executor, so that a slow listener doesn't delay the others.
+     *
+     * @param listener see {@link EventListener}
+     * @param executor Executor running the listener, see {@link #DIRECT_EXECUTOR}. If null,
+     *                 events are sent via the android main thread.
+     * @param eventMask event types to receive, see {@link Event#maskOf(int...)}
+     */
+    public void addEventListener(EventListener listener, Executor executor, long eventMask) {
+        super.addEventListener(listener, executor, false, eventMask);
+    }
+
+    /**
+     * Remove a listener added by {@link #addEventListener} or set by setEventListener().
+     */
+    public void removeEventListener(EventListener listener) {
+        super.removeEventListener(listener);
+    }
+
+    @Override
+    protected boolean isInternalEvent(int eventType) {
+        switch (eventType) {
+            case Event.SubItemAdded:
+            case Event.SubItemTreeAdded:
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    protected Event createEvent(int eventType, long arg1, long arg2, float argf1) {
+        return new Event(eventType, arg1, arg2, argf1);
+    }
+
     @Override
-    protected synchronized Event onEventNative(int eventType, long arg1, long arg2, float argf1) {
+    protected Event onEventNative(int eventType, long arg1, long arg2, float argf1) {
         switch (eventType) {
         case Event.MetaChanged:
             // either we update all metas (if first call) or we update a specific meta
             int id = (int) arg1;
-            if (id >= 0 && id < Meta.MAX)
-                mNativeMetas[id] = null;
-            return new Event(eventType, arg1);
+            if (id >= 0 && id < Meta.MAX) {
+                synchronized (mNativeMetas) {
+                    mNativeMetas[id] = null;
+                }
+            }
+            invalidateInfo();
+            return obtainEvent(eventType, arg1, 0, 0.0f);
         case Event.DurationChanged:
             mDuration = -1;
+            invalidateInfo();
             break;
         case Event.ParsedChanged:
+            mLastParsedStatus = (int) arg1;
             postParse();
-            return new Event(eventType, arg1);
+            return obtainEvent(eventType, arg1, 0, 0.0f);
         case Event.StateChanged:
             mState = -1;
             break;
         }
-        return new Event(eventType);
+        return obtainEvent(eventType, 0, 0, 0.0f);
     }
 
     /**
@@ -506,17 +805,14 @@ public class Media extends VLCObject<Media.Event> {
      * Get the duration of the media.
      */
     public long getDuration() {
-        synchronized (this) {
-            if (mDuration != -1)
-                return mDuration;
-            if (isReleased())
-                return 0;
-        }
+        final long cachedDuration = mDuration;
+        if (cachedDuration != -1)
+            return cachedDuration;
+        if (isReleased())
+            return 0;
         final long duration = nativeGetDuration();
-        synchronized (this) {
-            mDuration = duration;
-            return mDuration;
-        }
+        mDuration = duration;
+        return duration;
     }
 
     /**
@@ -525,17 +821,14 @@ public class Media extends VLCObject<Media.Event> {
      * @see State
      */
     public int getState() {
-        synchronized (this) {
-            if (mState != -1)
-                return mState;
-            if (isReleased())
-                return State.Error;
-        }
+        final int cachedState = mState;
+        if (cachedState != -1)
+            return cachedState;
+        if (isReleased())
+            return State.Error;
         final int state = nativeGetState();
-        synchronized (this) {
-            mState = state;
-            return mState;
-        }
+        mState = state;
+        return state;
     }
 
     /**
@@ -558,16 +851,54 @@ public class Media extends VLCObject<Media.Event> {
         }
     }
 
-    private synchronized void postParse() {
-        // fetch if parsed and not fetched
-        if ((mParseStatus & PARSE_STATUS_PARSED) != 0)
-            return;
-        mParseStatus &= ~PARSE_STATUS_PARSING;
-        mParseStatus |= PARSE_STATUS_PARSED;
-        mNativeTracks = null;
-        mDuration = -1;
-        mState = -1;
-        mType = -1;
+    private void postParse() {
+        synchronized (this) {
+            // fetch if parsed and not fetched
+            if ((mParseStatus & PARSE_STATUS_PARSED) != 0)
+                return;
+            mParseStatus &= ~PARSE_STATUS_PARSING;
+            mParseStatus |= PARSE_STATUS_PARSED;
+            mNativeTracks = null;
+            mDuration = -1;
+            mState = -1;
+            mType = -1;
+            invalidateInfo();
+        }
+        /* publish the snapshot now, so that readers of a parsed Media don't lock nor call libvlc */
+        getInfo();
+    }
+
+    private void invalidateInfo() {
+        /* the event thread and parsing threads can invalidate at the same time */
+        mInfoVersion.incrementAndGet();
+        mInfo = null;
+    }
+
+    /**
+     * Get an immutable snapshot of the info of this Media, once parsed.
+     *
+     * The snapshot is published when parsing ends, then returned without locking nor calling
+     * libvlc. It is rebuilt by the next call after a meta or the duration changes. Getters like
+     * {@link #getMeta(int)} and {@link #getTrack(int)} answer from it once parsed.
+     *
+     * @return the info, or null if this Media is not parsed
+     */
+    public MediaInfo getInfo() {
+        final MediaInfo cachedInfo = mInfo;
+        if (cachedInfo != null)
+            return cachedInfo;
+        if (!isParsed() || isReleased())
+            return null;
+        final int version = mInfoVersion.get();
+        final MediaInfo info = new MediaInfo(fetchNativeMetas(allMetaIds()), getTracks(),
+                getDuration(), getType(), mLastParsedStatus);
+        /* don't keep a snapshot invalidated while being built, or right after being published */
+        if (version == mInfoVersion.get()) {
+            mInfo = info;
+            if (version != mInfoVersion.get())
+                mInfo = null;
+        }
+        return info;
     }
 
     /**
@@ -585,6 +916,7 @@ public class Media extends VLCObject<Media.Event> {
             }
         }
         if (parse && nativeParse(flags)) {
+            mLastParsedStatus = ParsedStatus.Done;
             postParse();
             return true;
         } else
@@ -620,7 +952,14 @@ public class Media extends VLCObject<Media.Event> {
                 parse = true;
             }
         }
-        return parse && nativeParseAsync(flags, timeout);
+        if (!parse)
+            return false;
+        if (nativeParseAsync(flags, timeout))
+            return true;
+        synchronized (this) {
+            mParseStatus &= ~PARSE_STATUS_PARSING;
+        }
+        return false;
     }
 
     public boolean parseAsync(int flags) {
@@ -636,6 +975,13 @@ public class Media extends VLCObject<Media.Event> {
         return parseAsync(Parse.FetchLocal);
     }
 
+    /**
+     * Returns true if a parse of this Media is started and not ended yet.
+     */
+    public synchronized boolean isParsing() {
+        return (mParseStatus & PARSE_STATUS_PARSING) != 0;
+    }
+
     /**
      * Returns true if the media is parsed This Media should be alive (not released).
      */
@@ -649,37 +995,63 @@ public class Media extends VLCObject<Media.Event> {
      * @see {@link Type}
      */
     public int getType() {
-        synchronized (this) {
-            if (mType != -1)
-                return mType;
-            if (isReleased())
-                return Type.Unknown;
-        }
+        final int cachedType = mType;
+        if (cachedType != -1)
+            return cachedType;
+        if (isReleased())
+            return Type.Unknown;
         final int type = nativeGetType();
-        synchronized (this) {
-            mType = type;
-            return mType;
-        }
+        mType = type;
+        return type;
     }
 
-    private Track[] getTracks() {
-        synchronized (this) {
-            if (mNativeTracks != null)
-                return mNativeTracks;
-            if (isReleased())
-                return null;
+    /**
+     * Fill this Media with parsed info from a {@link MediaInfoCache}, and consider it parsed.
+     */
+    void setParsedInfo(String[] metas, Track[] tracks, long duration, int type) {
+        synchronized (mNativeMetas) {
+            System.arraycopy(metas, 0, mNativeMetas, 0, Math.min(metas.length, Meta.MAX));
         }
-        final Track[] tracks = nativeGetTracks();
         synchronized (this) {
             mNativeTracks = tracks;
-            return mNativeTracks;
         }
+        setParsedInfo(new MediaInfo(metas.clone(), tracks, duration, type, ParsedStatus.Done));
+    }
+
+    /**
+     * Answer metas and tracks from a MediaInfo, like one backed by a {@link MediaInfoStore}, and
+     * consider this Media parsed.
+     */
+    synchronized void setParsedInfo(MediaInfo info) {
+        mDuration = info.duration;
+        mType = info.type;
+        mParseStatus = PARSE_STATUS_PARSED;
+        mLastParsedStatus = info.parsedStatus;
+        mInfo = info;
+    }
+
+    Track[] getTracksInternal() {
+        return getTracks();
+    }
+
+    private Track[] getTracks() {
+        final Track[] cachedTracks = mNativeTracks;
+        if (cachedTracks != null)
+            return cachedTracks;
+        if (isReleased())
+            return null;
+        final Track[] tracks = nativeGetTracks();
+        mNativeTracks = tracks;
+        return tracks;
     }
 
     /**
      * Get the Track count.
      */
     public int getTrackCount() {
+        final MediaInfo info = getInfo();
+        if (info != null)
+            return info.getTrackCount();
         final Track[] tracks = getTracks();
         return tracks != null ? tracks.length : 0;
     }
@@ -693,6 +1065,9 @@ public class Media extends VLCObject<Media.Event> {
      * @see #getTrackCount()
      */
     public Track getTrack(int idx) {
+        final MediaInfo info = getInfo();
+        if (info != null)
+            return info.getTrack(idx);
         final Track[] tracks = getTracks();
         if (tracks == null || idx < 0 || idx >= tracks.length)
             return null;
@@ -708,22 +1083,85 @@ public class Media extends VLCObject<Media.Event> {
     public String getMeta(int id) {
         if (id < 0 || id >= Meta.MAX)
             return null;
+        final MediaInfo info = getInfo();
+        if (info != null)
+            return info.getMeta(id);
 
-        synchronized (this) {
+        synchronized (mNativeMetas) {
             if (mNativeMetas[id] != null)
                 return mNativeMetas[id];
-            if (isReleased())
-                return null;
         }
+        if (isReleased())
+            return null;
 
         final String meta = nativeGetMeta(id);
-        synchronized (this) {
+        synchronized (mNativeMetas) {
             mNativeMetas[id] = meta;
             return meta;
         }
     }
 
 
+    /**
+     * Get several Metas, like {@link #getMeta(int)} for each id.
+     *
+     * Metas of a parsed Media, or already cached, are read under a single lock without calling
+     * libvlc. Each other meta still costs one native call, as with getMeta(): libvlc has no call
+     * returning several metas. Only the locking is shared between ids.
+     *
+     * @param ids see {@link Meta}, if null or empty, all metas are returned
+     * @return metas in the order of ids, or indexed by {@link Meta} id if ids is null or empty.
+     * Missing metas are null.
+     */
+    public String[] fetchMetas(int... ids) {
+        if (ids == null || ids.length == 0)
+            ids = allMetaIds();
+        final MediaInfo info = getInfo();
+        if (info != null) {
+            final String[] metas = new String[ids.length];
+            for (int i = 0; i < ids.length; ++i)
+                metas[i] = info.getMeta(ids[i]);
+            return metas;
+        }
+        return fetchNativeMetas(ids);
+    }
+
+    private static int[] allMetaIds() {
+        final int[] ids = new int[Meta.MAX];
+        for (int i = 0; i < Meta.MAX; ++i)
+            ids[i] = i;
+        return ids;
+    }
+
+    private String[] fetchNativeMetas(int[] ids) {
+        final String[] metas = new String[ids.length];
+        int missing = 0;
+        synchronized (mNativeMetas) {
+            for (int i = 0; i < ids.length; ++i) {
+                final int id = ids[i];
+                if (id >= 0 && id < Meta.MAX) {
+                    metas[i] = mNativeMetas[id];
+                    if (metas[i] == null)
+                        missing++;
+                }
+            }
+        }
+        if (missing == 0 || isReleased())
+            return metas;
+
+        for (int i = 0; i < ids.length; ++i) {
+            if (metas[i] == null && ids[i] >= 0 && ids[i] < Meta.MAX)
+                metas[i] = nativeGetMeta(ids[i]);
+        }
+        synchronized (mNativeMetas) {
+            for (int i = 0; i < ids.length; ++i) {
+                if (metas[i] != null && mNativeMetas[ids[i]] == null)
+                    mNativeMetas[ids[i]] = metas[i];
+            }
+        }
+        return metas;
+    }
+
     private static String getMediaCodecModule() {
         return AndroidUtil.isLolliPopOrLater ? "mediacodec_ndk" : "mediacodec_jni";
     }
@@ -842,6 +1280,8 @@ public class Media extends VLCObject<Media.Event> {
         if (mSubItems != null)
             mSubItems.release();
         nativeRelease();
+        if (mLoopbackMrl != null)
+            LoopbackServer.unregister(mLoopbackMrl);
     }
 
     /* JNI */
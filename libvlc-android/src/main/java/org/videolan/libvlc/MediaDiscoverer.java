@@ -22,6 +22,8 @@ package org.videolan.libvlc;
 
 import android.support.annotation.Nullable;
 
+import java.util.concurrent.Executor;
+
 @SuppressWarnings("unused, JniMissingFunction")
 public class MediaDiscoverer extends VLCObject<MediaDiscoverer.Event> {
     private final static String TAG = "LibVLC/MediaDiscoverer";
@@ -105,12 +107,63 @@ public class MediaDiscoverer extends VLCObject<MediaDiscoverer.Event> {
         super.setEventListener(listener);
     }
 
+    /**
+     * Set an event listener that only receives the event types set in eventMask.
+     * Events are sent via the android main thread.
+     *
+     * @param listener see {@link EventListener}
+     * @param eventMask event types to receive, see {@link Event#maskOf(int...)}
+     */
+    public void setEventListener(EventListener listener, long eventMask) {
+        super.setEventListener(listener, null, false, eventMask);
+    }
+
+    /**
+     * Set an event listener running on an Executor. Events are delivered in order, one at a time.
+     *
+     * @param listener see {@link EventListener}
+     * @param executor Executor running the listener, see {@link #DIRECT_EXECUTOR}
+     */
+    public void setEventListenerOnExecutor(EventListener listener, Executor executor) {
+        super.setEventListenerOnExecutor(listener, executor, false, Event.MASK_ALL);
+    }
+
+    /**
+     * Add an event listener, in addition to the one set by setEventListener(). Each listener
+     * has its own executor, so that a slow listener doesn't delay the others.
+     *
+     * @param listener see {@link EventListener}
+     * @param executor Executor running the listener, see {@link #DIRECT_EXECUTOR}. If null,
+     *                 events are sent via the android main thread.
+     * @param eventMask event types to receive, see {@link Event#maskOf(int...)}
+     */
+    public void addEventListener(EventListener listener, Executor executor, long eventMask) {
+        super.addEventListener(listener, executor, false, eventMask);
+    }
+
+    /**
+     * Remove a listener added by {@link #addEventListener} or set by setEventListener().
+     */
+    public void removeEventListener(EventListener listener) {
+        super.removeEventListener(listener);
+    }
+
+    @Override
+    protected boolean isInternalEvent(int eventType) {
+        return false;
+    }
+
+    @Override
+    protected Event createEvent(int eventType, long arg1, long arg2, float argf1) {
+        return new Event(eventType);
+    }
+
     @Override
     protected Event onEventNative(int eventType, long arg1, long arg2, float argf1) {
         switch (eventType) {
             case Event.Started:
             case Event.Ended:
-                return new Event(eventType);
+                return obtainEvent(eventType, arg1, arg2, argf1);
         }
         return null;
     }
@@ -0,0 +1,84 @@
+/*****************************************************************************
+ * MediaInfo.java
+ *****************************************************************************
+ * Copyright © 2017 VLC authors, VideoLAN and VideoLabs
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston MA 02110-1301, USA.
+ *****************************************************************************/
+
+
+package org.videolan.libvlc;
+
+/**
+ * Immutable snapshot of the info of a parsed {@link Media}, see {@link Media#getInfo()}.
+ *
+ * A MediaInfo can be read from any thread without calling libvlc. It holds its metas and tracks,
+ * and is then read without locking, or reads them from a {@link MediaInfoStore} row.
+ */
+public final class MediaInfo {
+    private final String[] mMetas;
+    private final Media.Track[] mTracks;
+    private final MediaInfoStore mStore;
+    private final int mRow;
+    /** duration in milliseconds, -1 if unknown */
+    public final long duration;
+    /** see {@link Media.Type} */
+    public final int type;
+    /** see {@link Media.ParsedStatus} */
+    public final int parsedStatus;
+
+    MediaInfo(String[] metas, Media.Track[] tracks, long duration, int type, int parsedStatus) {
+        mMetas = metas;
+        mTracks = tracks != null ? tracks : new Media.Track[0];
+        mStore = null;
+        mRow = -1;
+        this.duration = duration;
+        this.type = type;
+        this.parsedStatus = parsedStatus;
+    }
+
+    MediaInfo(MediaInfoStore store, int row, long duration, int type, int parsedStatus) {
+        mMetas = null;
+        mTracks = null;
+        mStore = store;
+        mRow = row;
+        this.duration = duration;
+        this.type = type;
+        this.parsedStatus = parsedStatus;
+    }
+
+    /**
+     * @param id see {@link Media.Meta}
+     * @return meta or null if not found
+     */
+    public String getMeta(int id) {
+        if (mStore != null)
+            return mStore.getMeta(mRow, id);
+        return id >= 0 && id < mMetas.length ? mMetas[id] : null;
+    }
+
+    public int getTrackCount() {
+        return mStore != null ? mStore.getTrackCount(mRow) : mTracks.length;
+    }
+
+    /**
+     * @return Track or null if idx is not valid
+     */
+    public Media.Track getTrack(int idx) {
+        if (mStore != null)
+            return mStore.getTrack(mRow, idx);
+        return idx >= 0 && idx < mTracks.length ? mTracks[idx] : null;
+    }
+}
@@ -0,0 +1,396 @@
+/*****************************************************************************
+ * MediaInfoCache.java
+ *****************************************************************************
+ * Copyright © 2017 VLC authors, VideoLAN and VideoLabs
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston MA 02110-1301, USA.
+ *****************************************************************************/
+
+
+package org.videolan.libvlc;
+
+import android.net.Uri;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+
+/**
+ * Persistent cache of parsed Media info: metas, tracks, duration and type.
+ *
+ * Entries are keyed by the MRL, the size and the modification time of local files, so a modified
+ * file is parsed again. The cache is an append only binary file, memory-mapped for reading: only
+ * an index of the entries offsets is kept in memory, and an entry is decoded when a Media is
+ * loaded from it. Updated entries are appended, use {@link #clear()} to reclaim space.
+ *
+ * Typical use while scanning a library:
+ * <pre>
+ * if (!cache.load(media)) {
+ *     media.parse();
+ *     cache.store(media);
+ * }
+ * </pre>
+ */
+public final class MediaInfoCache {
+    private final static String TAG = "LibVLC/MediaInfoCache";
+    private static final int MAGIC = 0x564c434d; /* VLCM */
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    /* the file is mapped by a single MappedByteBuffer, indexed by int */
+    private static final long MAX_FILE_SIZE = Integer.MAX_VALUE;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final File mFile;
+    /* guarded by this */
+    private RandomAccessFile mRaf = null;
+    private MappedByteBuffer mMap = null;
+    private final HashMap<String, Entry> mIndex = new HashMap<String, Entry>();
+
+    private static class Entry {
+        final long size;
+        final long mtime;
+        /* offset of the entry data, after the key */
+        final long offset;
+
+        Entry(long size, long mtime, long offset) {
+            this.size = size;
+            this.mtime = mtime;
+            this.offset = offset;
+        }
+    }
+
+    /**
+     * Open or create a cache file. An invalid or incompatible file is reset.
+     */
+    public MediaInfoCache(File file) throws IOException {
+        mFile = file;
+        open();
+    }
+
+    private synchronized void open() throws IOException {
+        mRaf = new RandomAccessFile(mFile, "rw");
+        if (mRaf.length() < HEADER_SIZE || mRaf.readInt() != MAGIC || mRaf.readInt() != VERSION) {
+            reset();
+            return;
+        }
+        remap();
+        final ByteBuffer buffer = mMap.duplicate();
+        buffer.position(HEADER_SIZE);
+        /* end of the last complete record */
+        int validEnd = HEADER_SIZE;
+        try {
+            while (buffer.remaining() >= 4) {
+                final int length = buffer.getInt();
+                final int end = buffer.position() + length;
+                if (length <= 0 || end > buffer.limit())
+                    break;
+                final String mrl = getString(buffer);
+                final long size = buffer.getLong();
+                final long mtime = buffer.getLong();
+                if (mrl == null || buffer.position() > end)
+                    break;
+                mIndex.put(mrl, new Entry(size, mtime, buffer.position()));
+                buffer.position(end);
+                validEnd = end;
+            }
+        } catch (BufferUnderflowException ignored) {
+        }
+        if (validEnd < mRaf.length()) {
+            /* drop a torn or invalid tail, so that new records are not stored after it */
+            Log.w(TAG, "truncating cache " + mFile + " from " + mRaf.length() + " to " + validEnd);
+            mRaf.setLength(validEnd);
+            remap();
+        }
+    }
+
+    private void remap() throws IOException {
+        mMap = mRaf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, mRaf.length());
+    }
+
+    private void reset() throws IOException {
+        mIndex.clear();
+        mRaf.setLength(0);
+        mRaf.seek(0);
+        mRaf.writeInt(MAGIC);
+        mRaf.writeInt(VERSION);
+        remap();
+    }
+
+    /**
+     * Remove all entries.
+     */
+    public synchronized void clear() throws IOException {
+        reset();
+    }
+
+    public synchronized void close() {
+        try {
+            mRaf.close();
+        } catch (IOException ignored) {}
+        mMap = null;
+        mIndex.clear();
+    }
+
+    private static class Key {
+        final String mrl;
+        final long size;
+        final long mtime;
+
+        Key(String mrl, long size, long mtime) {
+            this.mrl = mrl;
+            this.size = size;
+            this.mtime = mtime;
+        }
+    }
+
+    /**
+     * Get the MRL of a Media and the size and modification time of its file.
+     *
+     * @return null if the Media is not a local file
+     */
+    private static Key getKey(Media media) {
+        final Uri uri = media.getUri();
+        if (uri == null || !"file".equals(uri.getScheme()) || uri.getPath() == null)
+            return null;
+        final File file = new File(uri.getPath());
+        final long size = file.length();
+        final long mtime = file.lastModified();
+        if (mtime == 0)
+            return null;
+        return new Key(uri.toString(), size, mtime);
+    }
+
+    /**
+     * Fill a Media from the cache, so that it doesn't need to be parsed.
+     *
+     * @return true if the Media was found, with the same file size and modification time
+     */
+    public boolean load(Media media) {
+        final Key key = getKey(media);
+        if (key == null)
+            return false;
+        final String[] metas = new String[Media.Meta.MAX];
+        final Media.Track[] tracks;
+        final long duration;
+        final int type;
+        synchronized (this) {
+            final Entry entry = mIndex.get(key.mrl);
+            if (mMap == null || entry == null || entry.size != key.size || entry.mtime != key.mtime)
+                return false;
+            final ByteBuffer buffer;
+            try {
+                /* entries stored since the last load are not mapped yet */
+                if (entry.offset >= mMap.limit())
+                    remap();
+                buffer = mMap.duplicate();
+            } catch (IOException e) {
+                return false;
+            }
+            if (entry.offset >= buffer.limit())
+                return false;
+            buffer.position((int) entry.offset);
+            try {
+                duration = buffer.getLong();
+                type = buffer.getInt();
+                final int metaCount = buffer.get() & 0xff;
+                for (int i = 0; i < metaCount; ++i) {
+                    final int id = buffer.get() & 0xff;
+                    final String meta = getString(buffer);
+                    if (id < metas.length)
+                        metas[id] = meta;
+                }
+                final int trackCount = buffer.getShort() & 0xffff;
+                tracks = new Media.Track[trackCount];
+                for (int i = 0; i < trackCount; ++i)
+                    tracks[i] = getTrack(buffer);
+            } catch (BufferUnderflowException e) {
+                Log.w(TAG, "corrupted entry for " + key.mrl);
+                return false;
+            }
+        }
+        media.setParsedInfo(metas, tracks, duration, type);
+        return true;
+    }
+
+    /**
+     * Store the info of a parsed Media. Metas and tracks are fetched from the Media if needed,
+     * so it should be alive (not released).
+     *
+     * @return true if stored, false if the Media is not a local file, can't be written, or if the
+     * cache file reached its maximum size of 2GB
+     */
+    public boolean store(Media media) {
+        final Key key = getKey(media);
+        if (key == null || !media.isParsed())
+            return false;
+
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream(512);
+        final DataOutputStream out = new DataOutputStream(bos);
+        try {
+            out.writeInt(0); /* length, set below */
+            putString(out, key.mrl);
+            out.writeLong(key.size);
+            out.writeLong(key.mtime);
+            out.writeLong(media.getDuration());
+            out.writeInt(media.getType());
+            int metaCount = 0;
+            final String[] metas = new String[Media.Meta.MAX];
+            for (int i = 0; i < Media.Meta.MAX; ++i) {
+                metas[i] = media.getMeta(i);
+                if (metas[i] != null)
+                    metaCount++;
+            }
+            out.writeByte(metaCount);
+            for (int i = 0; i < Media.Meta.MAX; ++i) {
+                if (metas[i] != null) {
+                    out.writeByte(i);
+                    putString(out, metas[i]);
+                }
+            }
+            final Media.Track[] tracks = media.getTracksInternal();
+            final int trackCount = tracks != null ? Math.min(tracks.length, 0xffff) : 0;
+            out.writeShort(trackCount);
+            for (int i = 0; i < trackCount; ++i)
+                putTrack(out, tracks[i]);
+            out.flush();
+        } catch (IOException e) {
+            return false; /* can't happen with a ByteArrayOutputStream */
+        }
+        final byte[] record = bos.toByteArray();
+        ByteBuffer.wrap(record).putInt(0, record.length - 4);
+
+        synchronized (this) {
+            if (mMap == null)
+                return false;
+            try {
+                final long offset = mRaf.length();
+                if (offset + record.length > MAX_FILE_SIZE) {
+                    Log.w(TAG, "cache " + mFile + " is full, clear() it to store new entries");
+                    return false;
+                }
+                mRaf.seek(offset);
+                mRaf.write(record);
+                /* skip the record length and key */
+                final long dataOffset = offset + 4 + 4 + key.mrl.getBytes(UTF8).length + 8 + 8;
+                mIndex.put(key.mrl, new Entry(key.size, key.mtime, dataOffset));
+                return true;
+            } catch (IOException e) {
+                Log.w(TAG, "can't write " + mFile + ": " + e);
+                return false;
+            }
+        }
+    }
+
+    private static void putTrack(DataOutputStream out, Media.Track track) throws IOException {
+        out.writeByte(track.type);
+        putString(out, track.codec);
+        putString(out, track.originalCodec);
+        out.writeInt(track.id);
+        out.writeInt(track.profile);
+        out.writeInt(track.level);
+        out.writeInt(track.bitrate);
+        putString(out, track.language);
+        putString(out, track.description);
+        switch (track.type) {
+            case Media.Track.Type.Audio: {
+                final Media.AudioTrack audio = (Media.AudioTrack) track;
+                out.writeInt(audio.channels);
+                out.writeInt(audio.rate);
+                break;
+            }
+            case Media.Track.Type.Video: {
+                final Media.VideoTrack video = (Media.VideoTrack) track;
+                out.writeInt(video.height);
+                out.writeInt(video.width);
+                out.writeInt(video.sarNum);
+                out.writeInt(video.sarDen);
+                out.writeInt(video.frameRateNum);
+                out.writeInt(video.frameRateDen);
+                out.writeInt(video.orientation);
+                out.writeInt(video.projection);
+                break;
+            }
+            case Media.Track.Type.Text:
+                putString(out, ((Media.SubtitleTrack) track).encoding);
+                break;
+        }
+    }
+
+    private static Media.Track getTrack(ByteBuffer buffer) {
+        final int type = buffer.get();
+        final String codec = getString(buffer);
+        final String originalCodec = getString(buffer);
+        final int id = buffer.getInt();
+        final int profile = buffer.getInt();
+        final int level = buffer.getInt();
+        final int bitrate = buffer.getInt();
+        final String language = getString(buffer);
+        final String description = getString(buffer);
+        switch (type) {
+            case Media.Track.Type.Audio:
+                return Media.createAudioTrackFromNative(codec, originalCodec, id, profile, level,
+                        bitrate, language, description, buffer.getInt(), buffer.getInt());
+            case Media.Track.Type.Video:
+                return Media.createVideoTrackFromNative(codec, originalCodec, id, profile, level,
+                        bitrate, language, description, buffer.getInt(), buffer.getInt(),
+                        buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt(),
+                        buffer.getInt(), buffer.getInt());
+            case Media.Track.Type.Text:
+                return Media.createSubtitleTrackFromNative(codec, originalCodec, id, profile, level,
+                        bitrate, language, description, getString(buffer));
+            default:
+                return Media.createUnknownTrackFromNative(codec, originalCodec, id, profile, level,
+                        bitrate, language, description);
+        }
+    }
+
+    /* strings are stored as their UTF-8 length, -1 if null, followed by their bytes */
+    private static void putString(DataOutputStream out, String string) throws IOException {
+        if (string == null) {
+            out.writeInt(-1);
+            return;
+        }
+        final byte[] bytes = string.getBytes(UTF8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        final int length = buffer.getInt();
+        if (length < 0)
+            return null;
+        if (length > buffer.remaining())
+            throw new BufferUnderflowException();
+        final String string;
+        if (buffer.hasArray()) {
+            string = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, UTF8);
+        } else {
+            final byte[] bytes = new byte[length];
+            buffer.get(bytes, 0, length);
+            return new String(bytes, UTF8);
+        }
+        buffer.position(buffer.position() + length);
+        return string;
+    }
+}
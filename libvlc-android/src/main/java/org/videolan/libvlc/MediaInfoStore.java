@@ -0,0 +1,381 @@
+/*****************************************************************************
+ * MediaInfoStore.java
+ *****************************************************************************
+ * Copyright © 2017 VLC authors, VideoLAN and VideoLabs
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston MA 02110-1301, USA.
+ *****************************************************************************/
+
+
+package org.videolan.libvlc;
+
+import android.net.Uri;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Compact storage of the info of many parsed Media, for large libraries.
+ *
+ * Info is stored by column in primitive arrays, one row per Media: numeric track fields are plain
+ * ints, and strings repeated across rows, like codecs, languages and encodings, are interned. A
+ * Media attached to a row answers {@link Media#getMeta(int)} and {@link Media#getTrack(int)} from
+ * the store, Track objects being only created when requested.
+ *
+ * Rows are added under a lock, and read without locking from the last published columns.
+ */
+public final class MediaInfoStore {
+    private static final int VIDEO_FIELD_COUNT = 6;
+
+    /*
+     * Columns of the rows, copied by reference and published after each add(). The writer only
+     * grows arrays by copying them, and appends past the counts of published Columns, so what a
+     * reader can see through its Columns never changes.
+     */
+    private static final class Columns implements Cloneable {
+        int rowCount = 0;
+        String[] mrls = new String[16];
+        long[] durations = new long[16];
+        int[] types = new int[16];
+        int[] metaStarts = new int[16];
+        byte[] metaCounts = new byte[16];
+        int[] trackStarts = new int[16];
+        short[] trackCounts = new short[16];
+
+        /* metas of all rows */
+        int metaCount = 0;
+        byte[] metaIds = new byte[64];
+        String[] metaValues = new String[64];
+
+        /* tracks of all rows */
+        int trackCount = 0;
+        byte[] trackTypes = new byte[32];
+        String[] codecs = new String[32];
+        String[] originalCodecs = new String[32];
+        int[] trackIds = new int[32];
+        int[] profiles = new int[32];
+        int[] levels = new int[32];
+        int[] bitrates = new int[32];
+        String[] languages = new String[32];
+        String[] descriptions = new String[32];
+        /* audio channels or video height */
+        int[] channelsOrHeights = new int[32];
+        /* audio rate or video width */
+        int[] ratesOrWidths = new int[32];
+        /* video only, by groups of 6: sarNum, sarDen, frameRateNum, frameRateDen, orientation, projection */
+        int[] videoFields = new int[VIDEO_FIELD_COUNT * 32];
+        /* subtitle encoding */
+        String[] encodings = new String[32];
+
+        /*
+         * MRL index, open addressing with linear probing: row + 1 of each MRL, or 0 if empty, and
+         * the hash of its MRL. A reader ignores the rows it can't see yet.
+         */
+        int mrlIndexCount = 0;
+        int[] mrlSlots = new int[32];
+        int[] mrlHashes = new int[32];
+
+        Columns copy() {
+            try {
+                return (Columns) clone();
+            } catch (CloneNotSupportedException e) {
+                throw new AssertionError(e);
+            }
+        }
+    }
+
+    /* guarded by this */
+    private final Columns mWriter = new Columns();
+    private final HashMap<String, String> mInterned = new HashMap<String, String>();
+
+    private volatile Columns mColumns = mWriter.copy();
+
+    /**
+     * Add the info of a parsed Media.
+     *
+     * @return the row of the Media, to use with {@link #attach(Media, int)}, or -1 if not parsed
+     */
+    public int add(Media media) {
+        final MediaInfo info = media.getInfo();
+        if (info == null)
+            return -1;
+        final Uri uri = media.getUri();
+        return add(uri != null ? uri.toString() : null, info);
+    }
+
+    /**
+     * Add a MediaInfo.
+     *
+     * @param mrl MRL of the Media, used by {@link #findRow(String)}, may be null
+     * @return the row of the info
+     */
+    public synchronized int add(String mrl, MediaInfo info) {
+        final Columns c = mWriter;
+        final int row = c.rowCount;
+        if (row == c.mrls.length) {
+            final int size = row * 2;
+            c.mrls = Arrays.copyOf(c.mrls, size);
+            c.durations = Arrays.copyOf(c.durations, size);
+            c.types = Arrays.copyOf(c.types, size);
+            c.metaStarts = Arrays.copyOf(c.metaStarts, size);
+            c.metaCounts = Arrays.copyOf(c.metaCounts, size);
+            c.trackStarts = Arrays.copyOf(c.trackStarts, size);
+            c.trackCounts = Arrays.copyOf(c.trackCounts, size);
+        }
+        c.mrls[row] = mrl;
+        c.durations[row] = info.duration;
+        c.types[row] = info.type;
+
+        c.metaStarts[row] = c.metaCount;
+        int metaCount = 0;
+        for (int id = 0; id < Media.Meta.MAX; ++id) {
+            final String meta = info.getMeta(id);
+            if (meta == null)
+                continue;
+            if (c.metaCount == c.metaIds.length) {
+                c.metaIds = Arrays.copyOf(c.metaIds, c.metaCount * 2);
+                c.metaValues = Arrays.copyOf(c.metaValues, c.metaCount * 2);
+            }
+            c.metaIds[c.metaCount] = (byte) id;
+            c.metaValues[c.metaCount] = meta;
+            c.metaCount++;
+            metaCount++;
+        }
+        c.metaCounts[row] = (byte) metaCount;
+
+        c.trackStarts[row] = c.trackCount;
+        final int trackCount = Math.min(info.getTrackCount(), Short.MAX_VALUE);
+        for (int i = 0; i < trackCount; ++i)
+            addTrack(c, info.getTrack(i));
+        c.trackCounts[row] = (short) trackCount;
+
+        if (mrl != null)
+            indexMrl(c, mrl, row);
+        c.rowCount++;
+        mColumns = c.copy();
+        return row;
+    }
+
+    private void addTrack(Columns c, Media.Track track) {
+        final int index = c.trackCount;
+        if (index == c.trackTypes.length) {
+            final int size = index * 2;
+            c.trackTypes = Arrays.copyOf(c.trackTypes, size);
+            c.codecs = Arrays.copyOf(c.codecs, size);
+            c.originalCodecs = Arrays.copyOf(c.originalCodecs, size);
+            c.trackIds = Arrays.copyOf(c.trackIds, size);
+            c.profiles = Arrays.copyOf(c.profiles, size);
+            c.levels = Arrays.copyOf(c.levels, size);
+            c.bitrates = Arrays.copyOf(c.bitrates, size);
+            c.languages = Arrays.copyOf(c.languages, size);
+            c.descriptions = Arrays.copyOf(c.descriptions, size);
+            c.channelsOrHeights = Arrays.copyOf(c.channelsOrHeights, size);
+            c.ratesOrWidths = Arrays.copyOf(c.ratesOrWidths, size);
+            c.videoFields = Arrays.copyOf(c.videoFields, size * VIDEO_FIELD_COUNT);
+            c.encodings = Arrays.copyOf(c.encodings, size);
+        }
+        c.trackTypes[index] = (byte) track.type;
+        c.codecs[index] = intern(track.codec);
+        c.originalCodecs[index] = intern(track.originalCodec);
+        c.trackIds[index] = track.id;
+        c.profiles[index] = track.profile;
+        c.levels[index] = track.level;
+        c.bitrates[index] = track.bitrate;
+        c.languages[index] = intern(track.language);
+        c.descriptions[index] = track.description;
+        c.encodings[index] = null;
+        switch (track.type) {
+            case Media.Track.Type.Audio: {
+                final Media.AudioTrack audio = (Media.AudioTrack) track;
+                c.channelsOrHeights[index] = audio.channels;
+                c.ratesOrWidths[index] = audio.rate;
+                break;
+            }
+            case Media.Track.Type.Video: {
+                final Media.VideoTrack video = (Media.VideoTrack) track;
+                c.channelsOrHeights[index] = video.height;
+                c.ratesOrWidths[index] = video.width;
+                final int offset = index * VIDEO_FIELD_COUNT;
+                c.videoFields[offset] = video.sarNum;
+                c.videoFields[offset + 1] = video.sarDen;
+                c.videoFields[offset + 2] = video.frameRateNum;
+                c.videoFields[offset + 3] = video.frameRateDen;
+                c.videoFields[offset + 4] = video.orientation;
+                c.videoFields[offset + 5] = video.projection;
+                break;
+            }
+            case Media.Track.Type.Text:
+                c.encodings[index] = intern(((Media.SubtitleTrack) track).encoding);
+                break;
+        }
+        c.trackCount++;
+    }
+
+    /* only for strings shared by many rows, metas and MRLs are mostly unique */
+    private String intern(String string) {
+        if (string == null)
+            return null;
+        final String interned = mInterned.get(string);
+        if (interned != null)
+            return interned;
+        mInterned.put(string, string);
+        return string;
+    }
+
+    private static int hashMrl(String mrl) {
+        final int hash = mrl.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+    /* an MRL added twice is indexed twice, findRow() returns the last row */
+    private static void indexMrl(Columns c, String mrl, int row) {
+        if ((c.mrlIndexCount + 1) * 2 > c.mrlSlots.length) {
+            /* new arrays, published Columns keep probing the old ones */
+            final int[] slots = new int[c.mrlSlots.length * 2];
+            final int[] hashes = new int[slots.length];
+            for (int i = 0; i < c.mrlSlots.length; ++i) {
+                if (c.mrlSlots[i] != 0)
+                    insertMrl(slots, hashes, c.mrlHashes[i], c.mrlSlots[i]);
+            }
+            c.mrlSlots = slots;
+            c.mrlHashes = hashes;
+        }
+        insertMrl(c.mrlSlots, c.mrlHashes, hashMrl(mrl), row + 1);
+        c.mrlIndexCount++;
+    }
+
+    private static void insertMrl(int[] slots, int[] hashes, int hash, int slot) {
+        final int mask = slots.length - 1;
+        int i = hash & mask;
+        while (slots[i] != 0)
+            i = (i + 1) & mask;
+        hashes[i] = hash;
+        slots[i] = slot;
+    }
+
+    /**
+     * Make a Media answer its metas and tracks from a row, and consider it parsed.
+     */
+    public void attach(Media media, int row) {
+        final Columns c = mColumns;
+        checkRow(c, row);
+        media.setParsedInfo(new MediaInfo(this, row, c.durations[row], c.types[row],
+                Media.ParsedStatus.Done));
+    }
+
+    /**
+     * @return the row of an MRL, or -1 if not found
+     */
+    public int findRow(String mrl) {
+        if (mrl == null)
+            return -1;
+        final Columns c = mColumns;
+        final int[] slots = c.mrlSlots;
+        final int hash = hashMrl(mrl);
+        final int mask = slots.length - 1;
+        int found = -1;
+        for (int i = hash & mask; slots[i] != 0; i = (i + 1) & mask) {
+            final int row = slots[i] - 1;
+            if (row < c.rowCount && row > found && c.mrlHashes[i] == hash
+                    && mrl.equals(c.mrls[row]))
+                found = row;
+        }
+        return found;
+    }
+
+    public int getRowCount() {
+        return mColumns.rowCount;
+    }
+
+    private static void checkRow(Columns c, int row) {
+        if (row < 0 || row >= c.rowCount)
+            throw new IndexOutOfBoundsException("invalid row " + row);
+    }
+
+    public String getMrl(int row) {
+        final Columns c = mColumns;
+        checkRow(c, row);
+        return c.mrls[row];
+    }
+
+    public long getDuration(int row) {
+        final Columns c = mColumns;
+        checkRow(c, row);
+        return c.durations[row];
+    }
+
+    public int getType(int row) {
+        final Columns c = mColumns;
+        checkRow(c, row);
+        return c.types[row];
+    }
+
+    /**
+     * @param id see {@link Media.Meta}
+     * @return meta or null if not found
+     */
+    public String getMeta(int row, int id) {
+        final Columns c = mColumns;
+        checkRow(c, row);
+        final int end = c.metaStarts[row] + c.metaCounts[row];
+        for (int i = c.metaStarts[row]; i < end; ++i) {
+            if (c.metaIds[i] == id)
+                return c.metaValues[i];
+        }
+        return null;
+    }
+
+    public int getTrackCount(int row) {
+        final Columns c = mColumns;
+        checkRow(c, row);
+        return c.trackCounts[row];
+    }
+
+    /**
+     * Create the Track of a row.
+     *
+     * @return Track or null if idx is not valid
+     */
+    public Media.Track getTrack(int row, int idx) {
+        final Columns c = mColumns;
+        checkRow(c, row);
+        if (idx < 0 || idx >= c.trackCounts[row])
+            return null;
+        final int i = c.trackStarts[row] + idx;
+        switch (c.trackTypes[i]) {
+            case Media.Track.Type.Audio:
+                return Media.createAudioTrackFromNative(c.codecs[i], c.originalCodecs[i],
+                        c.trackIds[i], c.profiles[i], c.levels[i], c.bitrates[i], c.languages[i],
+                        c.descriptions[i], c.channelsOrHeights[i], c.ratesOrWidths[i]);
+            case Media.Track.Type.Video: {
+                final int offset = i * VIDEO_FIELD_COUNT;
+                return Media.createVideoTrackFromNative(c.codecs[i], c.originalCodecs[i],
+                        c.trackIds[i], c.profiles[i], c.levels[i], c.bitrates[i], c.languages[i],
+                        c.descriptions[i], c.channelsOrHeights[i], c.ratesOrWidths[i],
+                        c.videoFields[offset], c.videoFields[offset + 1], c.videoFields[offset + 2],
+                        c.videoFields[offset + 3], c.videoFields[offset + 4],
+                        c.videoFields[offset + 5]);
+            }
+            case Media.Track.Type.Text:
+                return Media.createSubtitleTrackFromNative(c.codecs[i], c.originalCodecs[i],
+                        c.trackIds[i], c.profiles[i], c.levels[i], c.bitrates[i], c.languages[i],
+                        c.descriptions[i], c.encodings[i]);
+            default:
+                return Media.createUnknownTrackFromNative(c.codecs[i], c.originalCodecs[i],
+                        c.trackIds[i], c.profiles[i], c.levels[i], c.bitrates[i], c.languages[i],
+                        c.descriptions[i]);
+        }
+    }
+}
@@ -21,7 +21,8 @@
 package org.videolan.libvlc;
 
 import android.os.Handler;
-import android.util.SparseArray;
+
+import java.util.concurrent.Executor;
 
 @SuppressWarnings("unused, JniMissingFunction")
 public class MediaList extends VLCObject<MediaList.Event> {
@@ -53,15 +54,18 @@ public class MediaList extends VLCObject<MediaList.Event> {
 
     public interface EventListener extends VLCEvent.Listener<MediaList.Event> {}
 
-    private int mCount = 0;
-    private final SparseArray<Media> mMediaArray = new SparseArray<Media>();
+    /* Copied on write with mLock held, so that getCount() and getMediaAt() don't lock */
+    private volatile Media[] mMedias = new Media[0];
+    /* Guards mLocked and the events, instead of this, which is locked by listener changes */
+    private final Object mLock = new Object();
     private boolean mLocked = false;
 
     private void init() {
         lock();
-        mCount = nativeGetCount();
-        for (int i = 0; i < mCount; ++i)
-            mMediaArray.put(i, new Media(this, i));
+        final Media[] medias = new Media[nativeGetCount()];
+        for (int i = 0; i < medias.length; ++i)
+            medias[i] = new Media(this, i);
+        mMedias = medias;
         unlock();
     }
 
@@ -95,24 +99,31 @@ public class MediaList extends VLCObject<MediaList.Event> {
         init();
     }
 
-    private synchronized Media insertMediaFromEvent(int index) {
-        mCount++;
-
-        for (int i = mCount - 1; i >= index; --i)
-            mMediaArray.put(i + 1, mMediaArray.valueAt(i));
+    /* called with mLock held */
+    private Media insertMediaFromEvent(int index) {
+        final Media[] medias = mMedias;
+        if (index > medias.length)
+            return null;
         final Media media = new Media(this, index);
-        mMediaArray.put(index, media);
+        final Media[] newMedias = new Media[medias.length + 1];
+        System.arraycopy(medias, 0, newMedias, 0, index);
+        newMedias[index] = media;
+        System.arraycopy(medias, index, newMedias, index + 1, medias.length - index);
+        mMedias = newMedias;
         return media;
     }
 
-    private synchronized Media removeMediaFromEvent(int index) {
-        mCount--;
-        final Media media = mMediaArray.get(index);
-        if (media != null)
-            media.release();
-        for (int i = index; i < mCount; ++i) {
-            mMediaArray.put(i, mMediaArray.valueAt(i + 1));
-        }
+    /* called with mLock held */
+    private Media removeMediaFromEvent(int index) {
+        final Media[] medias = mMedias;
+        if (index >= medias.length)
+            return null;
+        final Media media = medias[index];
+        final Media[] newMedias = new Media[medias.length - 1];
+        System.arraycopy(medias, 0, newMedias, 0, index);
+        System.arraycopy(medias, index + 1, newMedias, index, medias.length - index - 1);
+        mMedias = newMedias;
+        media.release();
         return media;
     }
 
@@ -120,42 +131,95 @@ public class MediaList extends VLCObject<MediaList.Event> {
         super.setEventListener(listener, handler);
     }
 
+    /**
+     * Set an event listener that only receives the event types set in eventMask.
+     * The MediaList is still updated for every event.
+     *
+     * @param listener see {@link EventListener}
+     * @param handler Handler in which events are sent. If null, a handler will be created running on the main thread
+     * @param eventMask event types to receive, see {@link Event#maskOf(int...)}
+     */
+    public void setEventListener(EventListener listener, Handler handler, long eventMask) {
+        super.setEventListener(listener, handler, false, eventMask);
+    }
+
+    /**
+     * Set an event listener running on an Executor. Events are delivered in order, one at a time.
+     *
+     * @param listener see {@link EventListener}
+     * @param executor Executor running the listener, see {@link #DIRECT_EXECUTOR}
+     */
+    public void setEventListenerOnExecutor(EventListener listener, Executor executor) {
+        super.setEventListenerOnExecutor(listener, executor, false, Event.MASK_ALL);
+    }
+
+    /**
+     * Add an event listener, in addition to the one set by setEventListener(). Each listener
+     * has its own executor, so that a slow listener doesn't delay the others.
+     *
+     * @param listener see {@link EventListener}
+     * @param executor Executor running the listener, see {@link #DIRECT_EXECUTOR}. If null,
+     *                 events are sent via the android main thread.
+     * @param eventMask event types to receive, see {@link Event#maskOf(int...)}
+     */
+    public void addEventListener(EventListener listener, Executor executor, long eventMask) {
+        super.addEventListener(listener, executor, false, eventMask);
+    }
+
+    /**
+     * Remove a listener added by {@link #addEventListener} or set by setEventListener().
+     */
+    public void removeEventListener(EventListener listener) {
+        super.removeEventListener(listener);
+    }
+
+    /* MediaList events are never recycled, onEventNative() creates them with their Media */
     @Override
-    protected synchronized Event onEventNative(int eventType, long arg1, long arg2, float  argf1) {
-        if (mLocked)
-            throw new IllegalStateException("already locked from event callback");
-        mLocked = true;
-        Event event = null;
-        int index;
-
-        switch (eventType) {
-        case Event.ItemAdded:
-            index = (int) arg1;
-            if (index != -1) {
-                final Media media = insertMediaFromEvent(index);
-                event = new Event(eventType, media, index);
-            }
-            break;
-        case Event.ItemDeleted:
-            index = (int) arg1;
-            if (index != -1) {
-                final Media media = removeMediaFromEvent(index);
-                event = new Event(eventType, media, index);
+    protected Event createEvent(int eventType, long arg1, long arg2, float argf1) {
+        final int index = eventType != Event.EndReached ? (int) arg1 : -1;
+        final Media[] medias = mMedias;
+        return new Event(eventType, index >= 0 && index < medias.length ? medias[index] : null,
+                index);
+    }
+
+    @Override
+    protected Event onEventNative(int eventType, long arg1, long arg2, float  argf1) {
+        synchronized (mLock) {
+            if (mLocked)
+                throw new IllegalStateException("already locked from event callback");
+            mLocked = true;
+            Event event = null;
+            int index;
+
+            switch (eventType) {
+            case Event.ItemAdded:
+                index = (int) arg1;
+                if (index != -1) {
+                    final Media media = insertMediaFromEvent(index);
+                    event = new Event(eventType, media, index);
+                }
+                break;
+            case Event.ItemDeleted:
+                index = (int) arg1;
+                if (index != -1) {
+                    final Media media = removeMediaFromEvent(index);
+                    event = new Event(eventType, media, index);
+                }
+                break;
+            case Event.EndReached:
+                event = new Event(eventType, null, -1);
+                break;
             }
-            break;
-        case Event.EndReached:
-            event = new Event(eventType, null, -1);
-            break;
+            mLocked = false;
+            return event;
         }
-        mLocked = false;
-        return event;
     }
 
     /**
      * Get the number of Media.
      */
-    public synchronized int getCount() {
-        return mCount;
+    public int getCount() {
+        return mMedias.length;
     }
 
     /**
@@ -164,41 +228,45 @@ public class MediaList extends VLCObject<MediaList.Event> {
      * @param index index of the media
      * @return Media hold by MediaList. This Media should be released with {@link #release()}.
      */
-    public synchronized Media getMediaAt(int index) {
-        if (index < 0 || index >= getCount())
+    public Media getMediaAt(int index) {
+        final Media[] medias = mMedias;
+        if (index < 0 || index >= medias.length)
             throw new IndexOutOfBoundsException();
-        final Media media = mMediaArray.get(index);
+        final Media media = medias[index];
         media.retain();
         return media;
     }
 
     @Override
     public void onReleaseNative() {
-        for (int i = 0; i < mMediaArray.size(); ++i) {
-            final Media media = mMediaArray.get(i);
-            if (media != null)
-                media.release();
-        }
+        for (Media media : mMedias)
+            media.release();
 
         nativeRelease();
     }
 
-    private synchronized void lock() {
-        if (mLocked)
-            throw new IllegalStateException("already locked");
-        mLocked = true;
-        nativeLock();
+    private void lock() {
+        synchronized (mLock) {
+            if (mLocked)
+                throw new IllegalStateException("already locked");
+            mLocked = true;
+            nativeLock();
+        }
     }
 
-    private synchronized void unlock() {
-        if (!mLocked)
-            throw new IllegalStateException("not locked");
-        mLocked = false;
-        nativeUnlock();
+    private void unlock() {
+        synchronized (mLock) {
+            if (!mLocked)
+                throw new IllegalStateException("not locked");
+            mLocked = false;
+            nativeUnlock();
+        }
     }
 
-    protected synchronized boolean isLocked() {
-        return mLocked;
+    protected boolean isLocked() {
+        synchronized (mLock) {
+            return mLocked;
+        }
     }
 
     /* JNI */
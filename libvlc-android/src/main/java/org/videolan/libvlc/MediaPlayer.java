@@ -33,6 +33,7 @@ import android.media.AudioFormat;
 import android.media.AudioManager;
 import android.net.Uri;
 import android.os.Build;
+import android.os.Handler;
 import android.support.annotation.RequiresApi;
 import android.util.SparseArray;
 
@@ -40,6 +41,7 @@ import org.videolan.libvlc.util.AndroidUtil;
 import org.videolan.libvlc.util.VLCUtil;
 
 import java.io.File;
+import java.util.concurrent.Executor;
 
 @SuppressWarnings("unused, JniMissingFunction")
 public class MediaPlayer extends VLCObject<MediaPlayer.Event> {
@@ -84,6 +86,10 @@ public class MediaPlayer extends VLCObject<MediaPlayer.Event> {
             super(type, argf);
         }
 
+        protected Event(int type, long arg1, long arg2, float argf1) {
+            super(type, arg1, arg2, argf1);
+        }
+
         public long getTimeChanged() {
             return arg1;
         }
@@ -112,6 +118,8 @@ public class MediaPlayer extends VLCObject<MediaPlayer.Event> {
 
     public interface EventListener extends VLCEvent.Listener<MediaPlayer.Event> {}
 
+    public interface EventBatchListener extends VLCEvent.BatchListener<MediaPlayer.Event> {}
+
     public static class Position {
         public static final int Disable = -1;
         public static final int Center = 0;
@@ -354,7 +362,8 @@ public class MediaPlayer extends VLCObject<MediaPlayer.Event> {
         private native boolean nativeSetAmp(int index, float amp);
     }
 
-    private Media mMedia = null;
+    /* written with this locked, read without lock by getMedia() */
+    private volatile Media mMedia = null;
     private boolean mPlaying = false;
     private boolean mPlayRequested = false;
     private boolean mAudioDeviceFromUser = false;
@@ -567,22 +576,25 @@ public class MediaPlayer extends VLCObject<MediaPlayer.Event> {
         }
         nativeSetMedia(media);
         synchronized (this) {
-            if (mMedia != null) {
-                mMedia.release();
-            }
+            final Media oldMedia = mMedia;
             if (media != null)
                 media.retain();
             mMedia = media;
+            if (oldMedia != null)
+                oldMedia.release();
         }
     }
 
     /**
      * Get the Media used by this MediaPlayer. This Media should be released with {@link #release()}.
      */
-    public synchronized Media getMedia() {
-        if (mMedia != null)
-            mMedia.retain();
-        return mMedia;
+    public Media getMedia() {
+        for (;;) {
+            final Media media = mMedia;
+            /* retry if the Media was replaced and released meanwhile */
+            if (media == null || media.retain() || media == mMedia)
+                return media;
+        }
     }
 
     /**
@@ -1077,36 +1089,159 @@ public class MediaPlayer extends VLCObject<MediaPlayer.Event> {
         super.setEventListener(listener);
     }
 
+    /**
+     * Set an event listener, optionally conflating {@link Event#TimeChanged},
+     * {@link Event#PositionChanged} and {@link Event#Buffering} events: only the latest of each
+     * is pending in the Handler, other events keep their order.
+     *
+     * @param listener see {@link EventListener}
+     * @param handler Handler in which events are sent. If null, a handler will be created running on the main thread
+     * @param conflate true to conflate high frequency events
+     */
+    public synchronized void setEventListener(EventListener listener, Handler handler, boolean conflate) {
+        super.setEventListener(listener, handler, conflate);
+    }
+
+    /**
+     * Set an event listener that only receives the event types set in eventMask.
+     *
+     * @param listener see {@link EventListener}
+     * @param handler Handler in which events are sent. If null, a handler will be created running on the main thread
+     * @param conflate true to conflate high frequency events
+     * @param eventMask event types to receive, see {@link Event#maskOf(int...)}
+     */
+    public synchronized void setEventListener(EventListener listener, Handler handler, boolean conflate,
+                                              long eventMask) {
+        super.setEventListener(listener, handler, conflate, eventMask);
+    }
+
+    /**
+     * Set an event listener running on an Executor. Events are delivered in order, one at a time.
+     *
+     * @param listener see {@link EventListener}
+     * @param executor Executor running the listener, see {@link #DIRECT_EXECUTOR}
+     */
+    public synchronized void setEventListenerOnExecutor(EventListener listener, Executor executor) {
+        super.setEventListenerOnExecutor(listener, executor, false, Event.MASK_ALL);
+    }
+
+    /**
+     * Set an event listener running on an Executor, that only receives the event types set in
+     * eventMask.
+     *
+     * @param listener see {@link EventListener}
+     * @param executor Executor running the listener, see {@link #DIRECT_EXECUTOR}
+     * @param conflate true to conflate high frequency events
+     * @param eventMask event types to receive, see {@link Event#maskOf(int...)}
+     */
+    public synchronized void setEventListenerOnExecutor(EventListener listener, Executor executor,
+                                                        boolean conflate, long eventMask) {
+        super.setEventListenerOnExecutor(listener, executor, conflate, eventMask);
+    }
+
+    /**
+     * Add an event listener, in addition to the one set by setEventListener(). Each listener
+     * has its own executor, so that a slow listener doesn't delay the others.
+     *
+     * @param listener see {@link EventListener}
+     * @param executor Executor running the listener, see {@link #DIRECT_EXECUTOR}. If null,
+     *                 events are sent via the android main thread.
+     * @param conflate true to conflate high frequency events
+     * @param eventMask event types to receive, see {@link Event#maskOf(int...)}
+     */
+    public void addEventListener(EventListener listener, Executor executor, boolean conflate,
+                                 long eventMask) {
+        super.addEventListener(listener, executor, conflate, eventMask);
+    }
+
+    /**
+     * Remove a listener added by {@link #addEventListener} or set by setEventListener().
+     */
+    public void removeEventListener(EventListener listener) {
+        super.removeEventListener(listener);
+    }
+
+    @Override
+    protected boolean isInternalEvent(int eventType) {
+        switch (eventType) {
+            case Event.MediaChanged:
+            case Event.Stopped:
+            case Event.EndReached:
+            case Event.EncounteredError:
+            case Event.Vout:
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Set a listener receiving events by batch, once per display frame, in order to update the
+     * UI only once per frame. Replaces the listener set by {@link #setEventListener}.
+     *
+     * @param listener see {@link EventBatchListener}
+     * @param handler Handler in which batches are sent. If null, batches are sent via the main
+     *                thread, aligned on the display vsync
+     * @param conflate true to keep only the latest {@link Event#TimeChanged},
+     *                 {@link Event#PositionChanged} and {@link Event#Buffering} of each batch
+     * @param eventMask event types to receive, see {@link Event#maskOf(int...)}
+     */
+    public synchronized void setEventBatchListener(EventBatchListener listener, Handler handler,
+                                                   boolean conflate, long eventMask) {
+        super.setEventBatchListener(listener, handler, conflate, eventMask);
+    }
+
+    @Override
+    protected boolean isConflatable(int eventType) {
+        switch (eventType) {
+            case Event.TimeChanged:
+            case Event.PositionChanged:
+            case Event.Buffering:
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    protected Event createEvent(int eventType, long arg1, long arg2, float argf1) {
+        return new Event(eventType, arg1, arg2, argf1);
+    }
+
     @Override
-    protected synchronized Event onEventNative(int eventType, long arg1, long arg2, float argf1) {
+    protected Event onEventNative(int eventType, long arg1, long arg2, float argf1) {
+        /* only lock for events that modify this object, so that high frequency events don't
+         * contend with getters */
         switch (eventType) {
             case Event.MediaChanged:
             case Event.Stopped:
             case Event.EndReached:
             case Event.EncounteredError:
-                mVoutCount = 0;
-                notify();
+                synchronized (this) {
+                    mVoutCount = 0;
+                    notify();
+                }
             case Event.Opening:
             case Event.Buffering:
-                return new Event(eventType, argf1);
+                return obtainEvent(eventType, 0, 0, argf1);
             case Event.Playing:
             case Event.Paused:
-                return new Event(eventType);
+                return obtainEvent(eventType, 0, 0, 0.0f);
             case Event.TimeChanged:
-                return new Event(eventType, arg1);
+                return obtainEvent(eventType, arg1, 0, 0.0f);
             case Event.PositionChanged:
-                return new Event(eventType, argf1);
+                return obtainEvent(eventType, 0, 0, argf1);
             case Event.Vout:
-                mVoutCount = (int) arg1;
-                notify();
-                return new Event(eventType, arg1);
+                synchronized (this) {
+                    mVoutCount = (int) arg1;
+                    notify();
+                }
+                return obtainEvent(eventType, arg1, 0, 0.0f);
             case Event.ESAdded:
             case Event.ESDeleted:
             case Event.ESSelected:
-                return new Event(eventType, arg1, arg2);
+                return obtainEvent(eventType, arg1, arg2, 0.0f);
             case Event.SeekableChanged:
             case Event.PausableChanged:
-                return new Event(eventType, arg1);
+                return obtainEvent(eventType, arg1, 0, 0.0f);
         }
         return null;
     }
@@ -0,0 +1,62 @@
+/*****************************************************************************
+ * MediaSource.java
+ *****************************************************************************
+ * Copyright © 2017 VLC authors, VideoLAN and VideoLabs
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston MA 02110-1301, USA.
+ *****************************************************************************/
+
+
+package org.videolan.libvlc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Source of media data implemented by the application, like an in-memory cache, a custom network
+ * stack or an app-private container, see {@link Media#Media(LibVLC, MediaSource)}.
+ *
+ * Methods are called from a background thread, one at a time.
+ */
+public interface MediaSource {
+    /**
+     * Open the source, called before the first read.
+     *
+     * @return size in bytes, or -1 if unknown, in which case the source can't be seeked
+     */
+    long open() throws IOException;
+
+    /**
+     * Read data at the current position.
+     *
+     * @param buffer direct buffer to fill from its position up to its limit. It is reused by
+     *               later calls, and should not be kept.
+     * @return number of bytes read, or -1 at the end of the source. 0 if no data is available
+     *         yet: the read is retried a few times, then the connection fails.
+     */
+    int read(ByteBuffer buffer) throws IOException;
+
+    /**
+     * Change the position of the next read.
+     *
+     * @param position position in bytes from the start of the source
+     */
+    void seek(long position) throws IOException;
+
+    /**
+     * Close the source, called once the Media is released.
+     */
+    void close();
+}
@@ -0,0 +1,136 @@
+/*****************************************************************************
+ * StartupTrace.java
+ *****************************************************************************
+ * Copyright © 2017 VLC authors, VideoLAN and VideoLabs
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston MA 02110-1301, USA.
+ *****************************************************************************/
+
+
+package org.videolan.libvlc;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Trace;
+
+import org.videolan.libvlc.util.AndroidUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Opt-in timings of the phases of LibVLC creation: loading of each native library, audio output
+ * lookup, options assembly and native instance creation.
+ *
+ * Once enabled, phases are recorded until {@link #getReport()} is called, and are also shown as
+ * {@link android.os.Trace} sections on API 18+.
+ */
+public final class StartupTrace {
+    private static final int MAX_PHASES = 256;
+
+    private static volatile boolean sEnabled = false;
+    /* guarded by StartupTrace.class */
+    private static final ArrayList<Phase> sPhases = new ArrayList<Phase>();
+
+    private StartupTrace() {}
+
+    public static class Phase {
+        /** phase name, like "loadLibrary vlcjni" or "nativeNew" */
+        public final String name;
+        /** {@link System#nanoTime()} at the beginning of the phase */
+        public final long start;
+        /** duration of the phase in nanoseconds */
+        public final long duration;
+        /** name of the thread running the phase */
+        public final String threadName;
+
+        private Phase(String name, long start, long duration, String threadName) {
+            this.name = name;
+            this.start = start;
+            this.duration = duration;
+            this.threadName = threadName;
+        }
+
+        @Override
+        public String toString() {
+            return name + ": " + (duration / 1000) + "us (" + threadName + ")";
+        }
+    }
+
+    /**
+     * Enable or disable the recording of phases.
+     */
+    public static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * Get the phases recorded so far, sorted by start time, and forget them.
+     * Nested phases, like the libraries loaded during the creation of a LibVLC, are included in
+     * their parent phase duration.
+     */
+    public static synchronized List<Phase> getReport() {
+        final ArrayList<Phase> phases = new ArrayList<Phase>(sPhases);
+        sPhases.clear();
+        Collections.sort(phases, new Comparator<Phase>() {
+            @Override
+            public int compare(Phase lhs, Phase rhs) {
+                return lhs.start < rhs.start ? -1 : (lhs.start == rhs.start ? 0 : 1);
+            }
+        });
+        return Collections.unmodifiableList(phases);
+    }
+
+    /**
+     * Begin a phase, to be ended by {@link #end(String, long)} on the same thread.
+     *
+     * @return start time, or 0 if disabled
+     */
+    static long begin(String name) {
+        if (!sEnabled)
+            return 0;
+        if (AndroidUtil.isJellyBeanMR2OrLater)
+            beginSection(name);
+        return System.nanoTime();
+    }
+
+    static void end(String name, long start) {
+        if (start == 0)
+            return;
+        final long duration = System.nanoTime() - start;
+        if (AndroidUtil.isJellyBeanMR2OrLater)
+            endSection();
+        synchronized (StartupTrace.class) {
+            if (sPhases.size() < MAX_PHASES)
+                sPhases.add(new Phase(name, start, duration, Thread.currentThread().getName()));
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private static void beginSection(String name) {
+        Trace.beginSection(name);
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private static void endSection() {
+        Trace.endSection();
+    }
+}
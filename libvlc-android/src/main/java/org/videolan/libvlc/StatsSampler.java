@@ -0,0 +1,226 @@
+/*****************************************************************************
+ * StatsSampler.java
+ *****************************************************************************
+ * Copyright © 2017 VLC authors, VideoLAN and VideoLabs
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston MA 02110-1301, USA.
+ *****************************************************************************/
+
+
+package org.videolan.libvlc;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+/**
+ * Samples the {@link Media.Stats} of a playing Media at a fixed interval, and keeps a fixed size
+ * history in primitive arrays.
+ *
+ * Samples are copied to caller owned arrays, and rates are computed from the history, so that
+ * reading stats doesn't allocate.
+ */
+public final class StatsSampler {
+    /* indexes of the fields of a sample */
+    public static final int READ_BYTES = 0;
+    public static final int INPUT_BITRATE = 1;
+    public static final int DEMUX_READ_BYTES = 2;
+    public static final int DEMUX_BITRATE = 3;
+    public static final int DEMUX_CORRUPTED = 4;
+    public static final int DEMUX_DISCONTINUITY = 5;
+    public static final int DECODED_VIDEO = 6;
+    public static final int DECODED_AUDIO = 7;
+    public static final int DISPLAYED_PICTURES = 8;
+    public static final int LOST_PICTURES = 9;
+    public static final int PLAYED_ABUFFERS = 10;
+    public static final int LOST_ABUFFERS = 11;
+    public static final int SENT_PACKETS = 12;
+    public static final int SENT_BYTES = 13;
+    public static final int SEND_BITRATE = 14;
+    public static final int FIELD_COUNT = 15;
+
+    private final Media mMedia;
+    private final Handler mHandler;
+    private final long mInterval;
+
+    /* guarded by this */
+    private final int mCapacity;
+    private final double[] mValues;
+    private final long[] mTimes;
+    private long mCount = 0;
+    private boolean mRunning = false;
+    /* incremented by start(), so that a run started before a stop() doesn't post again */
+    private int mGeneration = 0;
+
+    /**
+     * @param media Media to sample, retained until {@link #stop()}
+     * @param capacity number of samples to keep
+     * @param interval sampling interval in milliseconds
+     * @param handler Handler running the sampling, if null, the main thread is used
+     */
+    public StatsSampler(Media media, int capacity, long interval, Handler handler) {
+        if (capacity < 2 || interval <= 0)
+            throw new IllegalArgumentException("capacity should be at least 2 and interval positive");
+        mMedia = media;
+        mCapacity = capacity;
+        mInterval = interval;
+        mHandler = handler != null ? handler : new Handler(Looper.getMainLooper());
+        mValues = new double[capacity * FIELD_COUNT];
+        mTimes = new long[capacity];
+    }
+
+    /**
+     * Start sampling.
+     *
+     * @return false if the Media is released
+     */
+    public synchronized boolean start() {
+        if (mRunning)
+            return true;
+        if (!mMedia.retain())
+            return false;
+        mRunning = true;
+        mGeneration++;
+        mHandler.removeCallbacks(mSampleRunnable);
+        mHandler.post(mSampleRunnable);
+        return true;
+    }
+
+    /**
+     * Stop sampling, the history is kept.
+     */
+    public void stop() {
+        synchronized (this) {
+            if (!mRunning)
+                return;
+            mRunning = false;
+            /* locked, so that it can't remove the run posted by a following start() */
+            mHandler.removeCallbacks(mSampleRunnable);
+        }
+        mMedia.release();
+    }
+
+    private final Runnable mSampleRunnable = new Runnable() {
+        @Override
+        public void run() {
+            final int generation;
+            synchronized (StatsSampler.this) {
+                if (!mRunning)
+                    return;
+                generation = mGeneration;
+            }
+            /* the JNI still allocates a Stats, it's only short lived */
+            final Media.Stats stats = mMedia.getStats();
+            final long now = SystemClock.elapsedRealtime();
+            synchronized (StatsSampler.this) {
+                /* stopped, or stopped and started again: the new start() posted its own run */
+                if (!mRunning || generation != mGeneration)
+                    return;
+                if (stats != null)
+                    record(stats, now);
+                mHandler.postDelayed(this, mInterval);
+            }
+        }
+    };
+
+    private void record(Media.Stats stats, long time) {
+        final int slot = (int) (mCount % mCapacity);
+        final int offset = slot * FIELD_COUNT;
+        mValues[offset + READ_BYTES] = stats.readBytes;
+        mValues[offset + INPUT_BITRATE] = stats.inputBitrate;
+        mValues[offset + DEMUX_READ_BYTES] = stats.demuxReadBytes;
+        mValues[offset + DEMUX_BITRATE] = stats.demuxBitrate;
+        mValues[offset + DEMUX_CORRUPTED] = stats.demuxCorrupted;
+        mValues[offset + DEMUX_DISCONTINUITY] = stats.demuxDiscontinuity;
+        mValues[offset + DECODED_VIDEO] = stats.decodedVideo;
+        mValues[offset + DECODED_AUDIO] = stats.decodedAudio;
+        mValues[offset + DISPLAYED_PICTURES] = stats.displayedPictures;
+        mValues[offset + LOST_PICTURES] = stats.lostPictures;
+        mValues[offset + PLAYED_ABUFFERS] = stats.playedAbuffers;
+        mValues[offset + LOST_ABUFFERS] = stats.lostAbuffers;
+        mValues[offset + SENT_PACKETS] = stats.sentPackets;
+        mValues[offset + SENT_BYTES] = stats.sentBytes;
+        mValues[offset + SEND_BITRATE] = stats.sendBitrate;
+        mTimes[slot] = time;
+        mCount++;
+    }
+
+    /**
+     * Get the number of samples available, at most the capacity.
+     */
+    public synchronized int getSampleCount() {
+        return (int) Math.min(mCount, mCapacity);
+    }
+
+    /**
+     * Copy a sample.
+     *
+     * @param age 0 for the latest sample, 1 for the previous one...
+     * @param values array of at least {@link #FIELD_COUNT} elements, indexed by
+     *               {@link #READ_BYTES}...
+     * @return {@link SystemClock#elapsedRealtime()} of the sample, or -1 if there is no such sample
+     */
+    public synchronized long getSample(int age, double[] values) {
+        if (age < 0 || age >= getSampleCount())
+            return -1;
+        final int slot = (int) ((mCount - 1 - age) % mCapacity);
+        System.arraycopy(mValues, slot * FIELD_COUNT, values, 0, FIELD_COUNT);
+        return mTimes[slot];
+    }
+
+    /* get the difference of a field between the latest sample and the oldest one */
+    private double deltaLocked(int field) {
+        final int newest = (int) ((mCount - 1) % mCapacity);
+        final int oldest = (int) ((mCount - getSampleCount()) % mCapacity);
+        return mValues[newest * FIELD_COUNT + field] - mValues[oldest * FIELD_COUNT + field];
+    }
+
+    private double durationLocked() {
+        final int newest = (int) ((mCount - 1) % mCapacity);
+        final int oldest = (int) ((mCount - getSampleCount()) % mCapacity);
+        return (mTimes[newest] - mTimes[oldest]) / 1000.0;
+    }
+
+    /**
+     * Get the number of video frames decoded per second over the history.
+     */
+    public synchronized double getDecodedFps() {
+        if (getSampleCount() < 2)
+            return 0;
+        final double duration = durationLocked();
+        return duration > 0 ? deltaLocked(DECODED_VIDEO) / duration : 0;
+    }
+
+    /**
+     * Get the ratio of lost pictures over the history, between 0 and 1.
+     */
+    public synchronized double getDropRate() {
+        if (getSampleCount() < 2)
+            return 0;
+        final double lost = deltaLocked(LOST_PICTURES);
+        final double total = lost + deltaLocked(DISPLAYED_PICTURES);
+        return total > 0 ? lost / total : 0;
+    }
+
+    /**
+     * Get the number of corrupted demuxed blocks per second over the history.
+     */
+    public synchronized double getCorruptedRate() {
+        if (getSampleCount() < 2)
+            return 0;
+        final double duration = durationLocked();
+        return duration > 0 ? deltaLocked(DEMUX_CORRUPTED) / duration : 0;
+    }
+}
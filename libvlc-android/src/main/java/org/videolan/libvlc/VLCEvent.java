@@ -20,11 +20,28 @@
 
 package org.videolan.libvlc;
 
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
 abstract class VLCEvent {
+    /**
+     * Mask matching every event type, see {@link #maskOf(int...)}
+     */
+    public static final long MASK_ALL = ~0L;
+
     public final int type;
-    protected final long arg1;
-    protected final long arg2;
-    protected final float argf1;
+    /* Not final: recycled events are re-initialized with {@link #init}, only by this package.
+     * An event is only recycled for the same type. */
+    protected long arg1;
+    protected long arg2;
+    protected float argf1;
+    /* true if this event was obtained from a pool and can be recycled after delivery */
+    boolean mRecyclable = false;
+    /* System.nanoTime() when received from libvlc, 0 if not measured */
+    long mNativeTimestamp = 0;
+    /* number of listeners that didn't receive or drop this event yet */
+    private volatile int mDeliveries = 0;
+    private static final AtomicIntegerFieldUpdater<VLCEvent> sDeliveriesUpdater =
+            AtomicIntegerFieldUpdater.newUpdater(VLCEvent.class, "mDeliveries");
 
     protected VLCEvent(int type) {
         this.type = type;
@@ -48,6 +65,45 @@ abstract class VLCEvent {
         this.arg1 = this.arg2 = 0;
         this.argf1 = argf;
     }
+    protected VLCEvent(int type, long arg1, long arg2, float argf1) {
+        this.type = type;
+        init(arg1, arg2, argf1);
+    }
+
+    final void init(long arg1, long arg2, float argf1) {
+        this.arg1 = arg1;
+        this.arg2 = arg2;
+        this.argf1 = argf1;
+    }
+
+    /**
+     * Build an event mask from event types. Event types of a same object only differ by their
+     * lowest bits, so a mask can hold any of them.
+     *
+     * @param eventTypes event types, like {@link MediaPlayer.Event#EndReached}
+     * @return mask to use when setting a listener
+     */
+    public static long maskOf(int... eventTypes) {
+        long mask = 0;
+        for (int eventType : eventTypes)
+            mask |= maskBit(eventType);
+        return mask;
+    }
+
+    final void setDeliveries(int deliveries) {
+        mDeliveries = deliveries;
+    }
+
+    /**
+     * @return true if the last listener is done with this event
+     */
+    final boolean releaseDelivery() {
+        return sDeliveriesUpdater.decrementAndGet(this) <= 0;
+    }
+
+    static long maskBit(int eventType) {
+        return 1L << (eventType & 0x3f);
+    }
 
     /**
      * Listener for libvlc events
@@ -57,4 +113,17 @@ abstract class VLCEvent {
     public interface Listener<T extends VLCEvent> {
         void onEvent(T event);
     }
+
+    /**
+     * Listener receiving libvlc events by batch, once per display frame
+     *
+     * @see VLCEvent
+     */
+    public interface BatchListener<T extends VLCEvent> {
+        /**
+         * @param events events received since the previous frame, in order. This list and its
+         * events are only valid during this call.
+         */
+        void onEventBatch(java.util.List<T> events);
+    }
 }
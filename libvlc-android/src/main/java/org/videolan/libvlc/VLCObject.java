@@ -22,45 +22,79 @@ package org.videolan.libvlc;
 
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 
 import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @SuppressWarnings("JniMissingFunction")
 abstract class VLCObject<T extends VLCEvent> {
-    private VLCEvent.Listener<T> mEventListener = null;
-    private Handler mHandler = null;
+    /**
+     * Executor running events directly from the libvlc event thread, for minimum latency.
+     * Listeners using it must return quickly and must not call blocking libvlc methods.
+     */
+    public static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    /* Listener set by setEventListener(), guarded by this */
+    private ListenerState<T> mListenerState = null;
+    /* Every listener, including mListenerState. Copied on write, so that events are dispatched
+     * without locking this object */
+    private volatile ListenerState<T>[] mListenerStates = newListenerStates(0);
     final LibVLC mLibVLC;
-    private int mNativeRefCount = 1;
+    /* shared with the LeakTracker, that can't access this object once it's unreachable */
+    private final AtomicInteger mNativeRefCount = new AtomicInteger(1);
+    private final Object mLeakRecord;
+
+    private static final int POOL_SIZE = 32;
+    private volatile boolean mEventRecycling = false;
+    /* one pool per event type, since the type of an event can't change */
+    private final Pool<T>[] mEventPools = newPools();
+    private final Pool<EventRunnable<T>> mRunnablePool = new Pool<EventRunnable<T>>(POOL_SIZE);
+    private volatile EventLatencyHistogram mLatencyHistogram = null;
+    private volatile EventTrace mEventTrace = null;
 
     protected VLCObject(LibVLC libvlc) {
         mLibVLC = libvlc;
+        mLeakRecord = LeakTracker.track(this, mNativeRefCount);
     }
 
     protected VLCObject(VLCObject parent) {
         mLibVLC = parent.mLibVLC;
+        mLeakRecord = LeakTracker.track(this, mNativeRefCount);
     }
 
     protected VLCObject() {
         mLibVLC = null;
+        mLeakRecord = LeakTracker.track(this, mNativeRefCount);
     }
 
     /**
      * Returns true if native object is released
      */
-    public synchronized boolean isReleased() {
-        return mNativeRefCount == 0;
+    public boolean isReleased() {
+        return mNativeRefCount.get() == 0;
     }
 
     /**
      * Increment internal ref count of the native object.
      * @return true if media is retained
      */
-    public synchronized final boolean retain() {
-        if (mNativeRefCount > 0) {
-            mNativeRefCount++;
-            return true;
-        } else
-            return false;
+    public final boolean retain() {
+        for (;;) {
+            final int refCount = mNativeRefCount.get();
+            if (refCount <= 0)
+                return false;
+            if (mNativeRefCount.compareAndSet(refCount, refCount + 1))
+                return true;
+        }
     }
 
     /**
@@ -71,24 +105,24 @@ abstract class VLCObject<T extends VLCEvent> {
      * For example: if you parse, then release a media, you'll still be able to retrieve all Metas or Tracks infos.
      */
     public final void release() {
-        int refCount = -1;
-        synchronized (this) {
-            if (mNativeRefCount == 0)
+        int refCount;
+        do {
+            refCount = mNativeRefCount.get();
+            if (refCount <= 0)
                 return;
-            if (mNativeRefCount > 0) {
-                refCount = --mNativeRefCount;
-            }
-            // clear event list
-            if (refCount == 0)
-                setEventListener(null);
-        }
-        if (refCount == 0) {
-            // detach events when not synchronized since onEvent is executed synchronized
-            nativeDetachEvents();
-            synchronized (this) {
-                onReleaseNative();
-            }
+        } while (!mNativeRefCount.compareAndSet(refCount, refCount - 1));
+        if (refCount - 1 > 0)
+            return;
+
+        // clear event list
+        removeAllEventListeners();
+        // detach events before onReleaseNative(), without locking this, that a listener running
+        // on the event thread may lock
+        nativeDetachEvents();
+        synchronized (this) {
+            onReleaseNative();
         }
+        LeakTracker.untrack(mLeakRecord);
     }
 
     /**
@@ -107,13 +141,434 @@ abstract class VLCObject<T extends VLCEvent> {
      * @param handler Handler in which events are sent. If null, a handler will be created running on the main thread
      */
     protected synchronized void setEventListener(VLCEvent.Listener<T> listener, Handler handler) {
-        if (mHandler != null)
-            mHandler.removeCallbacksAndMessages(null);
-        mEventListener = listener;
-        if (mEventListener == null)
-            mHandler = null;
-        else if (mHandler == null)
-            mHandler = handler != null ? handler : new Handler(Looper.getMainLooper());
+        setEventListener(listener, handler, false);
+    }
+
+    /**
+     * Set an event listener and an executor Handler, optionally conflating events.
+     *
+     * In conflating mode, only the latest event of each conflatable type (see
+     * {@link #isConflatable(int)}) is pending in the Handler at any time: a new event replaces
+     * the pending one instead of being posted. Other events are posted in order.
+     *
+     * @param listener see {@link VLCEvent.Listener}
+     * @param handler Handler in which events are sent. If null, a handler will be created running on the main thread
+     * @param conflate true to conflate high frequency events
+     */
+    protected synchronized void setEventListener(VLCEvent.Listener<T> listener, Handler handler,
+                                                 boolean conflate) {
+        setEventListener(listener, handler, conflate, VLCEvent.MASK_ALL);
+    }
+
+    /**
+     * Set an event listener that only receives some event types.
+     *
+     * Events that are not in the mask are dropped before being created, unless they are needed
+     * internally (see {@link #isInternalEvent(int)}), in which case they are still handled by
+     * {@link #onEventNative} but not dispatched.
+     *
+     * @param listener see {@link VLCEvent.Listener}
+     * @param handler Handler in which events are sent. If null, a handler will be created running on the main thread
+     * @param conflate true to conflate high frequency events, see {@link #isConflatable(int)}
+     * @param eventMask event types to dispatch, see {@link VLCEvent#maskOf(int...)}
+     */
+    protected synchronized void setEventListener(VLCEvent.Listener<T> listener, Handler handler,
+                                                 boolean conflate, long eventMask) {
+        final ListenerState<T> state = mListenerState;
+        if (listener == null) {
+            setListenerState(null);
+            return;
+        }
+        if (state != null && state.handler != null)
+            handler = state.handler;
+        else if (handler == null)
+            handler = new Handler(Looper.getMainLooper());
+        setListenerState(new ListenerState<T>(listener, handler, new HandlerExecutor(handler),
+                conflate, eventMask));
+    }
+
+    /**
+     * Set an event listener and the Executor running it.
+     *
+     * Events of this object are delivered one at a time and in order, even if the executor
+     * runs tasks concurrently.
+     *
+     * @param listener see {@link VLCEvent.Listener}
+     * @param executor Executor running the listener, see {@link #DIRECT_EXECUTOR}
+     * @param conflate true to conflate high frequency events, see {@link #isConflatable(int)}
+     * @param eventMask event types to dispatch, see {@link VLCEvent#maskOf(int...)}
+     */
+    protected synchronized void setEventListenerOnExecutor(VLCEvent.Listener<T> listener,
+                                                           Executor executor, boolean conflate,
+                                                           long eventMask) {
+        if (listener == null) {
+            setListenerState(null);
+            return;
+        }
+        if (executor == null)
+            throw new IllegalArgumentException("executor can't be null");
+        if (executor != DIRECT_EXECUTOR)
+            executor = new SerialExecutor(executor);
+        setListenerState(new ListenerState<T>(listener, null, executor, conflate, eventMask));
+    }
+
+    private void setListenerState(ListenerState<T> newState) {
+        final ListenerState<T> state = mListenerState;
+        mListenerState = newState;
+        replaceListenerState(state, newState);
+    }
+
+    /**
+     * Add an event listener, in addition to the one set by setEventListener().
+     *
+     * Each listener has its own executor and event mask, so that a slow listener doesn't delay
+     * the others.
+     *
+     * @param listener see {@link VLCEvent.Listener}
+     * @param executor Executor running the listener, see {@link #DIRECT_EXECUTOR}. If null,
+     *                 events are sent via the android main thread.
+     * @param conflate true to conflate high frequency events, see {@link #isConflatable(int)}
+     * @param eventMask event types to dispatch, see {@link VLCEvent#maskOf(int...)}
+     */
+    protected synchronized void addEventListener(VLCEvent.Listener<T> listener, Executor executor,
+                                                 boolean conflate, long eventMask) {
+        if (listener == null)
+            throw new IllegalArgumentException("listener can't be null");
+        final ListenerState<T> state;
+        if (executor == null) {
+            final Handler handler = new Handler(Looper.getMainLooper());
+            state = new ListenerState<T>(listener, handler, new HandlerExecutor(handler),
+                    conflate, eventMask);
+        } else
+            state = new ListenerState<T>(listener, null,
+                    executor != DIRECT_EXECUTOR ? new SerialExecutor(executor) : executor,
+                    conflate, eventMask);
+        replaceListenerState(null, state);
+    }
+
+    /**
+     * Remove a listener added by addEventListener() or set by setEventListener().
+     *
+     * @param listener see {@link VLCEvent.Listener}
+     */
+    protected synchronized void removeEventListener(VLCEvent.Listener<T> listener) {
+        if (mListenerState != null && mListenerState.listener == listener) {
+            setListenerState(null);
+            return;
+        }
+        for (ListenerState<T> state : mListenerStates) {
+            if (state.listener == listener) {
+                replaceListenerState(state, null);
+                return;
+            }
+        }
+    }
+
+    private synchronized void removeAllEventListeners() {
+        final ListenerState<T>[] states = mListenerStates;
+        mListenerState = null;
+        mListenerStates = newListenerStates(0);
+        for (ListenerState<T> state : states)
+            state.cancel();
+    }
+
+    private void replaceListenerState(ListenerState<T> oldState, ListenerState<T> newState) {
+        final ListenerState<T>[] states = mListenerStates;
+        final ArrayList<ListenerState<T>> newStates =
+                new ArrayList<ListenerState<T>>(states.length + 1);
+        for (ListenerState<T> state : states) {
+            if (state != oldState)
+                newStates.add(state);
+        }
+        if (newState != null)
+            newStates.add(newState);
+        mListenerStates = newStates.toArray(VLCObject.<T>newListenerStates(newStates.size()));
+        if (oldState != null)
+            oldState.cancel();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends VLCEvent> ListenerState<T>[] newListenerStates(int size) {
+        return (ListenerState<T>[]) new ListenerState<?>[size];
+    }
+
+    /**
+     * Set a listener receiving events by batch, once per display frame.
+     *
+     * Events are accumulated and delivered together in the Handler thread. If this thread is
+     * the main thread, batches are aligned on the display vsync (API 16+), otherwise they are
+     * delivered by a 16ms timer.
+     *
+     * @param listener see {@link VLCEvent.BatchListener}
+     * @param handler Handler in which batches are sent. If null, a handler will be created running on the main thread
+     * @param conflate true to keep only the latest conflatable event of each type per batch
+     * @param eventMask event types to dispatch, see {@link VLCEvent#maskOf(int...)}
+     */
+    protected synchronized void setEventBatchListener(VLCEvent.BatchListener<T> listener, Handler handler,
+                                                      boolean conflate, long eventMask) {
+        if (listener == null) {
+            setListenerState(null);
+            return;
+        }
+        if (handler == null)
+            handler = new Handler(Looper.getMainLooper());
+        setListenerState(new ListenerState<T>(new EventBatcher<T>(this, listener, handler, conflate),
+                handler, eventMask));
+    }
+
+
+    private static final class ListenerState<T extends VLCEvent> {
+        private final VLCEvent.Listener<T> listener;
+        private final Handler handler;
+        private final Executor executor;
+        private final ConflatedSlot<T>[] conflatedSlots;
+        private final EventBatcher<T> batcher;
+        private final long eventMask;
+        private volatile boolean cancelled = false;
+
+        private ListenerState(VLCEvent.Listener<T> listener, Handler handler, Executor executor,
+                              boolean conflate, long eventMask) {
+            this.listener = listener;
+            this.handler = handler;
+            this.executor = executor;
+            this.conflatedSlots = conflate ? VLCObject.<T>newConflatedSlots() : null;
+            this.batcher = null;
+            this.eventMask = eventMask;
+        }
+
+        private ListenerState(EventBatcher<T> batcher, Handler handler, long eventMask) {
+            this.listener = null;
+            this.handler = handler;
+            this.executor = null;
+            this.conflatedSlots = null;
+            this.batcher = batcher;
+            this.eventMask = eventMask;
+        }
+
+        private boolean wants(int eventType) {
+            return (eventMask & VLCEvent.maskBit(eventType)) != 0;
+        }
+
+        private void cancel() {
+            /* events already queued in an Executor are dropped when run */
+            cancelled = true;
+            if (executor instanceof HandlerExecutor)
+                ((HandlerExecutor) executor).clear();
+            if (executor instanceof SerialExecutor)
+                ((SerialExecutor) executor).clear();
+            if (batcher != null)
+                batcher.cancel();
+        }
+    }
+
+    /**
+     * Posts tasks to a Handler, that may be shared with a previous listener. Tasks are posted with
+     * this executor as token, so that clear() only removes its own tasks.
+     */
+    private static final class HandlerExecutor implements Executor {
+        private final Handler handler;
+
+        private HandlerExecutor(Handler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            handler.postAtTime(command, this, SystemClock.uptimeMillis());
+        }
+
+        private void clear() {
+            handler.removeCallbacksAndMessages(this);
+        }
+    }
+
+    /**
+     * Runs tasks one at a time and in order on an Executor that may run them concurrently.
+     */
+    private static final class SerialExecutor implements Executor, Runnable {
+        private final Executor executor;
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<Runnable>();
+        private boolean scheduled = false;
+
+        private SerialExecutor(Executor executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            synchronized (this) {
+                tasks.offer(command);
+                if (scheduled)
+                    return;
+                scheduled = true;
+            }
+            try {
+                executor.execute(this);
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    tasks.clear();
+                    scheduled = false;
+                }
+                throw e;
+            }
+        }
+
+        @Override
+        public void run() {
+            for (;;) {
+                final Runnable task;
+                synchronized (this) {
+                    task = tasks.poll();
+                    if (task == null) {
+                        scheduled = false;
+                        return;
+                    }
+                }
+                task.run();
+            }
+        }
+
+        private synchronized void clear() {
+            tasks.clear();
+        }
+    }
+
+    /**
+     * Returns true if {@link #onEventNative} must handle this event type in order to keep the
+     * state of this object up to date, even if no listener is interested in it.
+     *
+     * @param eventType event type
+     */
+    protected boolean isInternalEvent(int eventType) {
+        return true;
+    }
+
+    /**
+     * Returns true if only the latest event of this type is relevant, so that pending events of
+     * this type can be replaced by newer ones in conflating mode.
+     *
+     * @param eventType event type
+     */
+    protected boolean isConflatable(int eventType) {
+        return false;
+    }
+
+    /**
+     * Enable or disable the recycling of events.
+     *
+     * When enabled, events and the runnables used to post them are taken from a small pool and
+     * given back after {@link VLCEvent.Listener#onEvent(VLCEvent)} returns, so that steady-state
+     * playback doesn't allocate. The listener must not keep a reference to an event, nor access
+     * it, after onEvent() returns. Disabled by default.
+     *
+     * @param enabled true to recycle events
+     */
+    public void setEventRecycling(boolean enabled) {
+        mEventRecycling = enabled;
+    }
+
+    /**
+     * Measure the time spent by events between their reception from libvlc and their delivery
+     * to listeners.
+     *
+     * @param histogram histogram recording latencies, may be shared by several objects of the
+     *                  same class. If null, latencies are not measured anymore.
+     */
+    public void setEventLatencyHistogram(EventLatencyHistogram histogram) {
+        mLatencyHistogram = histogram;
+    }
+
+    /**
+     * Create a publisher streaming the events of this object with backpressure.
+     *
+     * @param executor Executor running the subscribers. If null, events are sent via the android
+     *                 main thread.
+     * @param eventMask event types to publish, see {@link VLCEvent#maskOf(int...)}
+     * @param capacity maximum number of events buffered for a subscriber, not counting merged
+     *                 high frequency events
+     * @see EventPublisher
+     */
+    public EventPublisher<T> newEventPublisher(Executor executor, long eventMask, int capacity) {
+        return new EventPublisher<T>(this, executor, eventMask, capacity);
+    }
+
+    /**
+     * Keep the last events received from libvlc, whether listeners are interested in them or not.
+     *
+     * @param trace trace to record events in, should not be shared with other objects. If null,
+     *              events are not traced anymore.
+     */
+    public void setEventTrace(EventTrace trace) {
+        mEventTrace = trace;
+    }
+
+    /**
+     * Get the trace set by {@link #setEventTrace(EventTrace)}, or null.
+     */
+    public EventTrace getEventTrace() {
+        return mEventTrace;
+    }
+
+    /**
+     * Record the latency of an event about to be delivered to a listener.
+     */
+    void recordLatency(T event) {
+        final EventLatencyHistogram histogram = mLatencyHistogram;
+        if (histogram != null && event.mNativeTimestamp != 0)
+            histogram.record(event.type, System.nanoTime() - event.mNativeTimestamp);
+    }
+
+    /**
+     * Get an event from the pool if recycling is enabled, or create a new one.
+     * Subclasses using this method must override {@link #createEvent}.
+     *
+     * @see #setEventRecycling(boolean)
+     */
+    protected final T obtainEvent(int eventType, long arg1, long arg2, float argf1) {
+        if (!mEventRecycling)
+            return createEvent(eventType, arg1, arg2, argf1);
+        T event = eventPool(eventType).acquire();
+        /* types sharing the same lowest bits share a pool */
+        if (event != null && event.type == eventType)
+            event.init(arg1, arg2, argf1);
+        else
+            event = createEvent(eventType, arg1, arg2, argf1);
+        event.mRecyclable = true;
+        return event;
+    }
+
+    /**
+     * Create a new event, called by {@link #obtainEvent} when no pooled event is available, and
+     * by {@link EventPublisher} to copy recycled events.
+     *
+     * @return Event that will be dispatched to listeners
+     */
+    protected abstract T createEvent(int eventType, long arg1, long arg2, float argf1);
+
+    /**
+     * Called once per listener the event was dispatched to, the event is recycled by the last one
+     */
+    void recycleEvent(T event) {
+        if (event.mRecyclable && event.releaseDelivery())
+            eventPool(event.type).recycle(event);
+    }
+
+    private Pool<T> eventPool(int eventType) {
+        final int index = eventType & (SLOT_COUNT - 1);
+        Pool<T> pool = mEventPools[index];
+        if (pool == null) {
+            synchronized (mEventPools) {
+                pool = mEventPools[index];
+                if (pool == null)
+                    pool = mEventPools[index] = new Pool<T>(POOL_SIZE);
+            }
+        }
+        return pool;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends VLCEvent> Pool<T>[] newPools() {
+        return (Pool<T>[]) new Pool<?>[SLOT_COUNT];
     }
 
     /**
@@ -137,27 +592,199 @@ abstract class VLCObject<T extends VLCEvent> {
     /* JNI */
     @SuppressWarnings("unused") /* Used from JNI */
     private long mInstance = 0;
-    private synchronized void dispatchEventFromNative(int eventType, long arg1, long arg2, float argf1) {
+    /* Used from JNI, and from tests */
+    void dispatchEventFromNative(int eventType, long arg1, long arg2, float argf1) {
+        final long timestamp = mLatencyHistogram != null ? System.nanoTime() : 0;
+        final EventTrace trace = mEventTrace;
+        if (trace != null)
+            trace.record(eventType, arg1, arg2, argf1);
         if (isReleased())
             return;
+        final ListenerState<T>[] states = mListenerStates;
+        int deliveries = 0;
+        for (ListenerState<T> state : states) {
+            if (state.wants(eventType))
+                deliveries++;
+        }
+        if (deliveries == 0 && !isInternalEvent(eventType))
+            return;
         final T event = onEventNative(eventType, arg1, arg2, argf1);
+        if (event == null)
+            return;
 
-        class EventRunnable implements Runnable {
-            private final VLCEvent.Listener<T> listener;
-            private final T event;
+        if (deliveries == 0) {
+            event.setDeliveries(1);
+            recycleEvent(event);
+            return;
+        }
+        event.setDeliveries(deliveries);
+        event.mNativeTimestamp = timestamp;
+        final boolean conflatable = isConflatable(eventType);
+        for (ListenerState<T> state : states) {
+            if (state.wants(eventType))
+                dispatchEvent(state, event, conflatable);
+        }
+    }
 
-            private EventRunnable(VLCEvent.Listener<T> listener, T event) {
-                this.listener = listener;
-                this.event = event;
+    private void dispatchEvent(ListenerState<T> state, T event, boolean conflatable) {
+        if (state.batcher != null) {
+            state.batcher.add(event, conflatable);
+            return;
+        }
+        if (state.conflatedSlots != null) {
+            if (conflatable) {
+                postConflated(state, event.type, event);
+                return;
             }
-            @Override
-            public void run() {
-                listener.onEvent(event);
+            retireConflatedSlots(state.conflatedSlots);
+        }
+        EventRunnable<T> runnable = event.mRecyclable ? mRunnablePool.acquire() : null;
+        if (runnable == null)
+            runnable = new EventRunnable<T>(this, event.mRecyclable);
+        runnable.set(state, event);
+        state.executor.execute(runnable);
+    }
+
+    private static class EventRunnable<T extends VLCEvent> implements Runnable {
+        private final VLCObject<T> owner;
+        private final boolean pooled;
+        private ListenerState<T> state;
+        private T event;
+
+        private EventRunnable(VLCObject<T> owner, boolean pooled) {
+            this.owner = owner;
+            this.pooled = pooled;
+        }
+
+        private void set(ListenerState<T> state, T event) {
+            this.state = state;
+            this.event = event;
+        }
+
+        @Override
+        public void run() {
+            final T event = this.event;
+            if (!state.cancelled) {
+                owner.recordLatency(event);
+                state.listener.onEvent(event);
+            }
+            if (pooled) {
+                this.state = null;
+                this.event = null;
+                owner.recycleEvent(event);
+                owner.mRunnablePool.recycle(this);
             }
         }
+    }
 
-        if (event != null && mEventListener != null && mHandler != null)
-            mHandler.post(new EventRunnable(mEventListener, event));
+    /* event types of a same VLCObject only differ by their lowest bits */
+    private static final int SLOT_COUNT = 64;
+
+    @SuppressWarnings("unchecked")
+    private static <T extends VLCEvent> ConflatedSlot<T>[] newConflatedSlots() {
+        return (ConflatedSlot<T>[]) new ConflatedSlot<?>[SLOT_COUNT];
+    }
+
+    private void postConflated(ListenerState<T> state, int eventType, T event) {
+        final ConflatedSlot<T>[] slots = state.conflatedSlots;
+        final int index = eventType & (SLOT_COUNT - 1);
+        final ConflatedSlot<T> slot;
+        final T replaced;
+        final boolean post;
+        /* locked with slots, so that a slot can't be retired while its event is replaced */
+        synchronized (slots) {
+            if (slots[index] == null)
+                slots[index] = new ConflatedSlot<T>(this, state);
+            slot = slots[index];
+            synchronized (slot) {
+                replaced = slot.event;
+                slot.event = event;
+                post = !slot.posted;
+                slot.posted = true;
+            }
+        }
+        if (replaced != null)
+            recycleEvent(replaced);
+        if (post)
+            state.executor.execute(slot);
+    }
+
+    /**
+     * Stop replacing the events of posted slots. A slot is run from the position where it was
+     * posted, so conflatable events following a non conflatable one go to new slots, posted after
+     * it, to be delivered in native order.
+     */
+    private static <T extends VLCEvent> void retireConflatedSlots(ConflatedSlot<T>[] slots) {
+        synchronized (slots) {
+            for (int i = 0; i < slots.length; ++i) {
+                final ConflatedSlot<T> slot = slots[i];
+                if (slot == null)
+                    continue;
+                synchronized (slot) {
+                    if (slot.posted)
+                        slots[i] = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Holds the latest pending event of a conflatable type. Posted at most once at a time.
+     */
+    private static class ConflatedSlot<T extends VLCEvent> implements Runnable {
+        private final VLCObject<T> owner;
+        private final ListenerState<T> state;
+        private T event = null;
+        private boolean posted = false;
+
+        private ConflatedSlot(VLCObject<T> owner, ListenerState<T> state) {
+            this.owner = owner;
+            this.state = state;
+        }
+
+        @Override
+        public void run() {
+            final T event;
+            synchronized (this) {
+                event = this.event;
+                this.event = null;
+                posted = false;
+            }
+            if (event == null)
+                return;
+            if (!state.cancelled) {
+                owner.recordLatency(event);
+                state.listener.onEvent(event);
+            }
+            owner.recycleEvent(event);
+        }
+    }
+
+    /**
+     * Fixed size pool, objects are acquired from the native thread and recycled from the
+     * thread that handles events.
+     */
+    private static class Pool<E> {
+        private final Object[] mItems;
+        private int mSize = 0;
+
+        private Pool(int capacity) {
+            mItems = new Object[capacity];
+        }
+
+        @SuppressWarnings("unchecked")
+        private synchronized E acquire() {
+            if (mSize == 0)
+                return null;
+            final E item = (E) mItems[--mSize];
+            mItems[mSize] = null;
+            return item;
+        }
+
+        private synchronized void recycle(E item) {
+            if (mSize < mItems.length)
+                mItems[mSize++] = item;
+        }
     }
     private native void nativeDetachEvents();
 
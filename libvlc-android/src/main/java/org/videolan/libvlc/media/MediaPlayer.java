@@ -33,6 +33,7 @@ import android.view.Surface;
 import android.view.SurfaceHolder;
 
 import org.videolan.libvlc.LibVLC;
+import org.videolan.libvlc.LibVLCOptions;
 import org.videolan.libvlc.Media;
 
 import java.io.File;
@@ -72,7 +73,7 @@ public class MediaPlayer
     private org.videolan.libvlc.MediaPlayer mMediaPlayer;
 
     public MediaPlayer() {
-        mLibVLC = new LibVLC(null); //FIXME, this is wrong
+        mLibVLC = LibVLC.obtain(null, new LibVLCOptions.Builder().build()); //FIXME, this is wrong
         mMediaPlayer = new org.videolan.libvlc.MediaPlayer(mLibVLC);
     }
 
@@ -124,10 +125,10 @@ public class MediaPlayer
         mMediaPlayer.setMedia(mCurrentMedia);
     }
 
-    // FIXME, this is INCORRECT, @offset and @length are ignored
     public void setDataSource(FileDescriptor fd, long offset, long length)
             throws IOException, IllegalArgumentException, IllegalStateException {
-        setDataSource(fd);
+        mCurrentMedia = new Media(mLibVLC, fd, offset, length);
+        mMediaPlayer.setMedia(mCurrentMedia);
     }
 
     public void prepare() throws IOException, IllegalStateException {
@@ -197,6 +198,7 @@ public class MediaPlayer
 
     public void release() {
         mMediaPlayer.release();
+        mLibVLC.release();
     }
 
     public void reset() {
@@ -60,7 +60,7 @@ public class Dumper {
         options.add("--no-audio");
         options.add("--no-spu");
         options.add("-vv");
-        mLibVLC = new LibVLC(null, options);
+        mLibVLC = LibVLC.obtain(null, options);
 
         final Media media = new Media(mLibVLC, uri);
         mMediaPlayer = new MediaPlayer(media);
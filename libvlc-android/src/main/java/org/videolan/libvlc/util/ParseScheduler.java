@@ -0,0 +1,368 @@
+/*****************************************************************************
+ * ParseScheduler.java
+ *****************************************************************************
+ * Copyright © 2017 VLC authors, VideoLAN and VideoLabs
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston MA 02110-1301, USA.
+ *****************************************************************************/
+
+
+package org.videolan.libvlc.util;
+
+import android.net.Uri;
+import android.os.SystemClock;
+
+import org.videolan.libvlc.LibVLC;
+import org.videolan.libvlc.Media;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Parses many Media with a bounded number of concurrent parses.
+ *
+ * Requests are queued in priority lanes, {@link #PRIORITY_VISIBLE} first, and started when a parse
+ * ends. Each request has a deadline: it fails with {@link Media.ParsedStatus#Timeout} if it's not
+ * parsed in time, and isn't started at all if the deadline passed while it was queued. Results
+ * are Futures completed on {@link Media.Event#ParsedChanged}, by a private thread that also
+ * releases the Media and starts the next parse, since the libvlc event thread can't.
+ *
+ * A cancelled parse releases its slot right away, but libvlc can't stop it: it still runs until
+ * its end or its deadline.
+ */
+public class ParseScheduler {
+    private static final String TAG = "LibVLC/ParseScheduler";
+
+    /** Media displayed right now */
+    public static final int PRIORITY_VISIBLE = 0;
+    public static final int PRIORITY_NORMAL = 1;
+    /** Prefetching, scanning */
+    public static final int PRIORITY_BACKGROUND = 2;
+    private static final int PRIORITY_COUNT = 3;
+    private static final long THREAD_KEEP_ALIVE_MS = 5000;
+
+    private final LibVLC mLibVLC;
+    private final int mMaxParses;
+    private final int mFlags;
+
+    /* runs ParsedChanged events, stops when idle */
+    private final ThreadPoolExecutor mExecutor;
+
+    /* guarded by this */
+    private final List<ArrayDeque<Request>> mLanes;
+    private int mRunningCount = 0;
+
+    public static class Result {
+        /** parsed Media */
+        public final Media media;
+        /** see {@link Media.ParsedStatus} */
+        public final int status;
+
+        private Result(Media media, int status) {
+            this.media = media;
+            this.status = status;
+        }
+
+        public boolean isSuccess() {
+            return status == Media.ParsedStatus.Done;
+        }
+    }
+
+    /**
+     * @param libVLC LibVLC used to create Media from Uri
+     * @param maxParses maximum number of parses running at the same time
+     * @param flags see {@link Media.Parse}
+     */
+    public ParseScheduler(LibVLC libVLC, int maxParses, int flags) {
+        if (maxParses <= 0)
+            throw new IllegalArgumentException("maxParses should be positive");
+        mLibVLC = libVLC;
+        mMaxParses = maxParses;
+        mFlags = flags;
+        mLanes = new ArrayList<ArrayDeque<Request>>(PRIORITY_COUNT);
+        for (int i = 0; i < PRIORITY_COUNT; ++i)
+            mLanes.add(new ArrayDeque<Request>());
+        mExecutor = new ThreadPoolExecutor(1, 1, THREAD_KEEP_ALIVE_MS, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                return new Thread(runnable, "LibVLC ParseScheduler");
+            }
+        });
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Schedule the parse of a Media. The Media is retained until the parse ends.
+     *
+     * @param priority {@link #PRIORITY_VISIBLE}, {@link #PRIORITY_NORMAL} or
+     *                 {@link #PRIORITY_BACKGROUND}
+     * @param timeout maximum time allowed to parse the media, queuing included, in milliseconds.
+     *                0 to wait indefinitely.
+     */
+    public Future<Result> parse(Media media, int priority, long timeout) {
+        if (media == null)
+            throw new IllegalArgumentException("media can't be null");
+        if (!media.retain())
+            throw new IllegalStateException("media is released");
+        return schedule(new Request(media, false, priority, timeout));
+    }
+
+    /**
+     * Schedule the parse of a Uri. The Media of the Result should be released by the caller,
+     * unless the request is cancelled.
+     *
+     * @see #parse(Media, int, long)
+     */
+    public Future<Result> parse(Uri uri, int priority, long timeout) {
+        if (uri == null)
+            throw new IllegalArgumentException("uri can't be null");
+        return schedule(new Request(new Media(mLibVLC, uri), true, priority, timeout));
+    }
+
+    private Future<Result> schedule(Request request) {
+        if (request.priority < 0 || request.priority >= PRIORITY_COUNT) {
+            request.finish(Media.ParsedStatus.Failed, true);
+            throw new IllegalArgumentException("invalid priority");
+        }
+        synchronized (this) {
+            mLanes.get(request.priority).add(request);
+        }
+        startNext();
+        return request;
+    }
+
+    /**
+     * Change the priority of a queued request, like when a row becomes visible.
+     *
+     * @return false if the request is already running or done
+     */
+    public boolean setPriority(Future<Result> future, int priority) {
+        if (priority < 0 || priority >= PRIORITY_COUNT)
+            throw new IllegalArgumentException("invalid priority");
+        final Request request = (Request) future;
+        synchronized (this) {
+            if (!mLanes.get(request.priority).remove(request))
+                return false;
+            request.priority = priority;
+            mLanes.get(priority).add(request);
+        }
+        return true;
+    }
+
+    /**
+     * Cancel all queued and running requests.
+     */
+    public void cancelAll() {
+        for (;;) {
+            final Request request;
+            synchronized (this) {
+                request = pollLocked();
+            }
+            if (request == null)
+                break;
+            request.cancel(true);
+        }
+    }
+
+    private Request pollLocked() {
+        for (ArrayDeque<Request> lane : mLanes) {
+            final Request request = lane.poll();
+            if (request != null)
+                return request;
+        }
+        return null;
+    }
+
+    private void startNext() {
+        for (;;) {
+            final Request request;
+            synchronized (this) {
+                if (mRunningCount >= mMaxParses)
+                    return;
+                request = pollLocked();
+                if (request == null)
+                    return;
+                mRunningCount++;
+                request.running = true;
+            }
+            request.start();
+        }
+    }
+
+    private void onRequestEnded(Request request) {
+        synchronized (this) {
+            if (request.running) {
+                request.running = false;
+                mRunningCount--;
+            } else
+                mLanes.get(request.priority).remove(request);
+        }
+        startNext();
+    }
+
+    private class Request implements Future<Result>, Media.EventListener {
+        private final Media mMedia;
+        private final boolean mOwned;
+        /* SystemClock.elapsedRealtime() deadline, or 0 */
+        private final long mDeadline;
+        /* guarded by ParseScheduler.this */
+        int priority;
+        boolean running = false;
+
+        /* guarded by this */
+        private boolean mStarted = false;
+        private boolean mDone = false;
+        private boolean mCancelled = false;
+        private Result mResult = null;
+
+        private Request(Media media, boolean owned, int priority, long timeout) {
+            mMedia = media;
+            mOwned = owned;
+            mDeadline = timeout > 0 ? SystemClock.elapsedRealtime() + timeout : 0;
+            this.priority = priority;
+        }
+
+        private void start() {
+            synchronized (this) {
+                if (mDone)
+                    return;
+                mStarted = true;
+            }
+            /* a concurrent cancel() releases the Media: keep it alive until parseAsync() */
+            if (!mMedia.retain()) {
+                finish(Media.ParsedStatus.Failed, false);
+                return;
+            }
+            try {
+                startRetained();
+            } finally {
+                mMedia.release();
+            }
+        }
+
+        private void startRetained() {
+            int timeout = 0;
+            if (mDeadline != 0) {
+                final long remaining = mDeadline - SystemClock.elapsedRealtime();
+                if (remaining <= 0) {
+                    finish(Media.ParsedStatus.Timeout, false);
+                    return;
+                }
+                timeout = (int) Math.min(remaining, Integer.MAX_VALUE);
+            }
+            if (mMedia.isParsed()) {
+                finish(Media.ParsedStatus.Done, false);
+                return;
+            }
+            /* not DIRECT_EXECUTOR: finish() calls libvlc, not allowed from its event thread */
+            mMedia.addEventListener(this, mExecutor,
+                    Media.Event.maskOf(Media.Event.ParsedChanged));
+            synchronized (this) {
+                /* cancelled before the listener was added: finish() couldn't remove it */
+                if (mDone) {
+                    mMedia.removeEventListener(this);
+                    return;
+                }
+            }
+            if (!mMedia.parseAsync(mFlags, timeout)) {
+                if (mMedia.isParsed())
+                    finish(Media.ParsedStatus.Done, false);
+                else if (!mMedia.isParsing())
+                    finish(Media.ParsedStatus.Failed, false);
+                /* else parsed by another caller: its ParsedChanged finishes this request */
+            }
+        }
+
+        /* called from mExecutor */
+        @Override
+        public void onEvent(Media.Event event) {
+            if (event.type == Media.Event.ParsedChanged)
+                finish(event.getParsedStatus(), false);
+        }
+
+        private void finish(int status, boolean cancelled) {
+            synchronized (this) {
+                if (mDone)
+                    return;
+                mDone = true;
+                mCancelled = cancelled;
+                mResult = new Result(mMedia, status);
+                notifyAll();
+            }
+            if (mStarted)
+                mMedia.removeEventListener(this);
+            if (!mOwned || cancelled)
+                mMedia.release();
+            onRequestEnded(this);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            synchronized (this) {
+                if (mDone)
+                    return false;
+            }
+            finish(Media.ParsedStatus.Skipped, true);
+            return isCancelled();
+        }
+
+        @Override
+        public synchronized boolean isCancelled() {
+            return mCancelled;
+        }
+
+        @Override
+        public synchronized boolean isDone() {
+            return mDone;
+        }
+
+        @Override
+        public synchronized Result get() throws InterruptedException, ExecutionException {
+            while (!mDone)
+                wait();
+            return getResultLocked();
+        }
+
+        @Override
+        public synchronized Result get(long timeout, TimeUnit unit)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            long remaining = unit.toMillis(timeout);
+            final long end = SystemClock.elapsedRealtime() + remaining;
+            while (!mDone) {
+                if (remaining <= 0)
+                    throw new TimeoutException();
+                wait(remaining);
+                remaining = end - SystemClock.elapsedRealtime();
+            }
+            return getResultLocked();
+        }
+
+        private Result getResultLocked() {
+            if (mCancelled)
+                throw new CancellationException();
+            return mResult;
+        }
+    }
+}
@@ -0,0 +1,243 @@
+/*****************************************************************************
+ * CallbackSourceTest.java
+ *****************************************************************************
+ * Copyright © 2017 VLC authors, VideoLAN and VideoLabs
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston MA 02110-1301, USA.
+ *****************************************************************************/
+
+package org.videolan.libvlc;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CallbackSourceTest {
+    private static final int FILE_SIZE = 16 * 1024 * 1024;
+
+    private File mFile;
+    private byte[] mData;
+
+    private static class FileSource implements MediaSource {
+        private final File mFile;
+        private FileInputStream mStream;
+        private FileChannel mChannel;
+        int emptyReads = 0;
+
+        FileSource(File file) {
+            mFile = file;
+        }
+
+        @Override
+        public long open() throws IOException {
+            mStream = new FileInputStream(mFile);
+            mChannel = mStream.getChannel();
+            return mChannel.size();
+        }
+
+        @Override
+        public int read(ByteBuffer buffer) throws IOException {
+            if (emptyReads > 0) {
+                emptyReads--;
+                return 0;
+            }
+            return mChannel.read(buffer);
+        }
+
+        @Override
+        public void seek(long position) throws IOException {
+            mChannel.position(position);
+        }
+
+        @Override
+        public void close() {
+            try {
+                mStream.close();
+            } catch (IOException ignored) {}
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        mData = new byte[FILE_SIZE];
+        new Random(42).nextBytes(mData);
+        mFile = File.createTempFile("callback-source", ".bin");
+        final FileOutputStream os = new FileOutputStream(mFile);
+        try {
+            os.write(mData);
+        } finally {
+            os.close();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    private static byte[] fetch(String mrl, long start, long end) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) new URL(mrl).openConnection();
+        connection.setRequestProperty("Range", "bytes=" + start + "-" + end);
+        final InputStream is = connection.getInputStream();
+        try {
+            final ByteArrayOutputStream os = new ByteArrayOutputStream((int) (end - start + 1));
+            final byte[] chunk = new byte[64 * 1024];
+            int read;
+            while ((read = is.read(chunk)) != -1)
+                os.write(chunk, 0, read);
+            return os.toByteArray();
+        } finally {
+            is.close();
+        }
+    }
+
+    /* @return time in ns to fetch the whole file through the loopback server */
+    private long timeFetch(LoopbackServer.Source source) throws IOException {
+        final String mrl = LoopbackServer.register(source);
+        try {
+            final long start = System.nanoTime();
+            final byte[] data = fetch(mrl, 0, FILE_SIZE - 1);
+            final long time = System.nanoTime() - start;
+            assertArrayEquals(mData, data);
+            return time;
+        } finally {
+            LoopbackServer.unregister(mrl);
+        }
+    }
+
+    private long timeFileRead() throws IOException {
+        final FileInputStream is = new FileInputStream(mFile);
+        try {
+            final FileChannel channel = is.getChannel();
+            final ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+            final long start = System.nanoTime();
+            long total = 0;
+            int read;
+            while ((read = channel.read(buffer)) != -1) {
+                total += read;
+                buffer.clear();
+            }
+            final long time = System.nanoTime() - start;
+            assertEquals(FILE_SIZE, total);
+            return time;
+        } finally {
+            is.close();
+        }
+    }
+
+    private static String throughput(long ns) {
+        return (FILE_SIZE / 1024 / 1024) * 1000000000L / Math.max(ns, 1) + " MB/s";
+    }
+
+    @Test
+    public void throughputAgainstALocalFile() throws IOException {
+        long file = Long.MAX_VALUE, region = Long.MAX_VALUE, callback = Long.MAX_VALUE;
+        /* best of 3, the first round warms up */
+        for (int i = 0; i < 3; ++i) {
+            file = Math.min(file, timeFileRead());
+            final FileInputStream is = new FileInputStream(mFile);
+            try {
+                region = Math.min(region,
+                        timeFetch(new Media.FileRegionSource(is.getChannel(), 0, FILE_SIZE)));
+            } finally {
+                is.close();
+            }
+            callback = Math.min(callback, timeFetch(new Media.CallbackSource(new FileSource(mFile))));
+        }
+        /* the copy through a Java buffer should cost well under 4 times the sendfile path */
+        assertTrue("read of " + FILE_SIZE / 1024 / 1024 + "MB: " + throughput(file)
+                + " from the file, " + throughput(region) + " via FileRegionSource, "
+                + throughput(callback) + " via CallbackSource", callback < region * 4);
+    }
+
+    @Test
+    public void concurrentConnectionsReadTheirOwnRanges() throws Exception {
+        final String mrl = LoopbackServer.register(new Media.CallbackSource(new FileSource(mFile)));
+        try {
+            final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+            final Thread[] threads = new Thread[4];
+            final int rangeSize = FILE_SIZE / threads.length;
+            for (int i = 0; i < threads.length; ++i) {
+                final int start = i * rangeSize;
+                threads[i] = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            final byte[] data = fetch(mrl, start, start + rangeSize - 1);
+                            if (!Arrays.equals(Arrays.copyOfRange(mData, start, start + rangeSize),
+                                    data))
+                                failure.set(new AssertionError("range at " + start + " differs"));
+                        } catch (Throwable t) {
+                            failure.set(t);
+                        }
+                    }
+                });
+                threads[i].start();
+            }
+            for (Thread thread : threads)
+                thread.join();
+            assertNull(failure.get());
+        } finally {
+            LoopbackServer.unregister(mrl);
+        }
+    }
+
+    @Test
+    public void retriesEmptyReads() throws IOException {
+        final FileSource fileSource = new FileSource(mFile);
+        fileSource.emptyReads = 5;
+        final Media.CallbackSource source = new Media.CallbackSource(fileSource);
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        assertEquals(1000, source.transferTo(10, 1000, Channels.newChannel(os)));
+        assertArrayEquals(Arrays.copyOfRange(mData, 10, 1010), os.toByteArray());
+        source.close();
+    }
+
+    @Test
+    public void failsWhenReadsStayEmpty() {
+        final FileSource fileSource = new FileSource(mFile);
+        fileSource.emptyReads = Integer.MAX_VALUE;
+        final Media.CallbackSource source = new Media.CallbackSource(fileSource);
+        try {
+            source.transferTo(0, 1000, Channels.newChannel(new ByteArrayOutputStream()));
+            fail("transfer should fail");
+        } catch (IOException e) {
+            /* expected */
+        } finally {
+            source.close();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*****************************************************************************
+ * ConflationOrderTest.java
+ *****************************************************************************
+ * Copyright © 2017 VLC authors, VideoLAN and VideoLabs
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston MA 02110-1301, USA.
+ *****************************************************************************/
+
+package org.videolan.libvlc;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+
+public class ConflationOrderTest {
+    /* runs its tasks when asked, like a busy Handler */
+    private static class QueueExecutor implements Executor {
+        private final ArrayList<Runnable> mTasks = new ArrayList<Runnable>();
+
+        @Override
+        public void execute(Runnable command) {
+            mTasks.add(command);
+        }
+
+        void runAll() {
+            for (int i = 0; i < mTasks.size(); ++i)
+                mTasks.get(i).run();
+            mTasks.clear();
+        }
+    }
+
+    private static class RecordingListener implements VLCEvent.Listener<TestObject.Event> {
+        final StringBuilder events = new StringBuilder();
+
+        @Override
+        public void onEvent(TestObject.Event event) {
+            if (events.length() > 0)
+                events.append(' ');
+            events.append(event.type == TestObject.TimeChanged ? "time" : "end")
+                    .append(event.getArg1());
+        }
+    }
+
+    @Test
+    public void conflatedEventsKeepTheirOrderWithOtherEvents() {
+        final TestObject object = new TestObject();
+        final QueueExecutor executor = new QueueExecutor();
+        final RecordingListener listener = new RecordingListener();
+        object.addEventListener(listener, executor, true, VLCEvent.MASK_ALL);
+
+        object.dispatch(TestObject.TimeChanged, 1);
+        object.dispatch(TestObject.TimeChanged, 2);
+        object.dispatch(TestObject.EndReached, 3);
+        object.dispatch(TestObject.TimeChanged, 4);
+        object.dispatch(TestObject.TimeChanged, 5);
+        executor.runAll();
+        assertEquals("time2 end3 time5", listener.events.toString());
+
+        /* slots are reused once delivered */
+        object.dispatch(TestObject.TimeChanged, 6);
+        object.dispatch(TestObject.TimeChanged, 7);
+        executor.runAll();
+        assertEquals("time2 end3 time5 time7", listener.events.toString());
+    }
+}
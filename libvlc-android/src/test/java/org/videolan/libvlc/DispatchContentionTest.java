@@ -0,0 +1,123 @@
+/*****************************************************************************
+ * DispatchContentionTest.java
+ *****************************************************************************
+ * Copyright © 2017 VLC authors, VideoLAN and VideoLabs
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston MA 02110-1301, USA.
+ *****************************************************************************/
+
+package org.videolan.libvlc;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DispatchContentionTest {
+    private static class CountingListener implements VLCEvent.Listener<TestObject.Event> {
+        private volatile int count = 0;
+
+        @Override
+        public void onEvent(TestObject.Event event) {
+            count++;
+        }
+    }
+
+    @Test
+    public void dispatchDoesNotWaitForObjectMonitor() throws InterruptedException {
+        final TestObject object = new TestObject();
+        final CountingListener listener = new CountingListener();
+        object.addEventListener(listener, VLCObject.DIRECT_EXECUTOR, false, VLCEvent.MASK_ALL);
+
+        final CountDownLatch locked = new CountDownLatch(1);
+        final CountDownLatch dispatched = new CountDownLatch(1);
+        final Thread holder = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (object) {
+                    locked.countDown();
+                    try {
+                        dispatched.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException ignored) {
+                    }
+                }
+            }
+        });
+        holder.start();
+        assertTrue(locked.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < 1000; ++i)
+            object.dispatch(TestObject.EndReached, i);
+        dispatched.countDown();
+        holder.join();
+        assertEquals(1000, listener.count);
+    }
+
+    @Test
+    public void gettersDoNotWaitForARunningListener() throws InterruptedException {
+        final TestObject object = new TestObject();
+        final CountDownLatch inListener = new CountDownLatch(1);
+        final CountDownLatch listenerDone = new CountDownLatch(1);
+        object.addEventListener(new VLCEvent.Listener<TestObject.Event>() {
+            @Override
+            public void onEvent(TestObject.Event event) {
+                inListener.countDown();
+                try {
+                    listenerDone.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException ignored) {
+                }
+            }
+        }, VLCObject.DIRECT_EXECUTOR, false, VLCEvent.MASK_ALL);
+
+        final Thread dispatcher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                object.dispatch(TestObject.EndReached, 0);
+            }
+        });
+        dispatcher.start();
+        assertTrue(inListener.await(10, TimeUnit.SECONDS));
+
+        final AtomicBoolean done = new AtomicBoolean(false);
+        final Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                final CountingListener other = new CountingListener();
+                for (int i = 0; i < 1000; ++i) {
+                    object.isReleased();
+                    object.retain();
+                    object.release();
+                    synchronized (object) {
+                        object.addEventListener(other, VLCObject.DIRECT_EXECUTOR, false,
+                                VLCEvent.MASK_ALL);
+                        object.removeEventListener(other);
+                    }
+                }
+                done.set(true);
+            }
+        });
+        reader.start();
+        reader.join(5000);
+        /* read before letting the listener return */
+        final boolean doneDuringListener = done.get();
+        listenerDone.countDown();
+        dispatcher.join();
+        reader.join();
+        assertTrue("getters waited for the listener", doneDuringListener);
+    }
+}
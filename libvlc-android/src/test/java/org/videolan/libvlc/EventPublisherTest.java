@@ -0,0 +1,88 @@
+/*****************************************************************************
+ * EventPublisherTest.java
+ *****************************************************************************
+ * Copyright © 2017 VLC authors, VideoLAN and VideoLabs
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston MA 02110-1301, USA.
+ *****************************************************************************/
+
+package org.videolan.libvlc;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class EventPublisherTest {
+    private static class RecordingSubscriber implements EventPublisher.Subscriber<TestObject.Event> {
+        final StringBuilder events = new StringBuilder();
+        EventPublisher.Subscription subscription;
+
+        @Override
+        public void onSubscribe(EventPublisher.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(TestObject.Event event) {
+            if (events.length() > 0)
+                events.append(' ');
+            events.append(event.type == TestObject.TimeChanged ? "time" : "end")
+                    .append(event.getArg1());
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            events.append(" error");
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+
+    @Test
+    public void conflatedEventsKeepTheirOrderWithOtherEvents() {
+        final TestObject object = new TestObject();
+        final EventPublisher<TestObject.Event> publisher =
+                object.newEventPublisher(VLCObject.DIRECT_EXECUTOR, VLCEvent.MASK_ALL, 16);
+        final RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+
+        object.dispatch(TestObject.TimeChanged, 1);
+        object.dispatch(TestObject.TimeChanged, 2);
+        object.dispatch(TestObject.EndReached, 3);
+        object.dispatch(TestObject.TimeChanged, 4);
+        object.dispatch(TestObject.TimeChanged, 5);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        assertEquals("time2 end3 time5", subscriber.events.toString());
+    }
+
+    @Test
+    public void cancellingFromOnSubscribeUnregisters() {
+        final TestObject object = new TestObject();
+        object.internalEvents = false;
+        final EventPublisher<TestObject.Event> publisher =
+                object.newEventPublisher(VLCObject.DIRECT_EXECUTOR, VLCEvent.MASK_ALL, 16);
+        publisher.subscribe(new RecordingSubscriber() {
+            @Override
+            public void onSubscribe(EventPublisher.Subscription subscription) {
+                subscription.cancel();
+            }
+        });
+
+        object.dispatch(TestObject.EndReached, 1);
+        assertEquals(0, object.nativeEventCount);
+    }
+}
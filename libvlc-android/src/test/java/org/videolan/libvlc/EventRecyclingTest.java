@@ -0,0 +1,91 @@
+/*****************************************************************************
+ * EventRecyclingTest.java
+ *****************************************************************************
+ * Copyright © 2017 VLC authors, VideoLAN and VideoLabs
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston MA 02110-1301, USA.
+ *****************************************************************************/
+
+package org.videolan.libvlc;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EventRecyclingTest {
+    private static final int WARM_UP = 10000;
+    private static final int EVENTS = 100000;
+
+    private static class CountingListener implements VLCEvent.Listener<TestObject.Event> {
+        private long sum = 0;
+
+        @Override
+        public void onEvent(TestObject.Event event) {
+            sum += event.getArg1();
+        }
+    }
+
+    @Test
+    public void recycledEventsAreReinitialized() {
+        final TestObject object = new TestObject();
+        final CountingListener listener = new CountingListener();
+        object.setEventRecycling(true);
+        object.addEventListener(listener, VLCObject.DIRECT_EXECUTOR, false, VLCEvent.MASK_ALL);
+        for (int i = 1; i <= 100; ++i)
+            object.dispatch(i % 2 == 0 ? TestObject.TimeChanged : TestObject.EndReached, i);
+        assertEquals(5050, listener.sum);
+    }
+
+    @Test
+    public void recycledDispatchDoesNotAllocate() {
+        final long allocated = measureAllocations(true);
+        assertTrue("recycled dispatch allocated " + allocated + " bytes for " + EVENTS + " events",
+                allocated < EVENTS);
+    }
+
+    @Test
+    public void dispatchAllocatesWithoutRecycling() {
+        /* checks that allocations are measured at all */
+        final long allocated = measureAllocations(false);
+        assertTrue("dispatch allocated " + allocated + " bytes for " + EVENTS + " events",
+                allocated >= EVENTS);
+    }
+
+    private static long measureAllocations(boolean recycling) {
+        final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        final com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+        final long threadId = Thread.currentThread().getId();
+
+        final TestObject object = new TestObject();
+        object.setEventRecycling(recycling);
+        object.addEventListener(new CountingListener(), VLCObject.DIRECT_EXECUTOR, false,
+                VLCEvent.MASK_ALL);
+        for (int i = 0; i < WARM_UP; ++i)
+            object.dispatch(TestObject.TimeChanged, i);
+
+        final long start = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < EVENTS; ++i)
+            object.dispatch(TestObject.TimeChanged, i);
+        return threadBean.getThreadAllocatedBytes(threadId) - start;
+    }
+}
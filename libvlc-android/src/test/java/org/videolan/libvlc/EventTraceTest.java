@@ -0,0 +1,83 @@
+/*****************************************************************************
+ * EventTraceTest.java
+ *****************************************************************************
+ * Copyright © 2017 VLC authors, VideoLAN and VideoLabs
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston MA 02110-1301, USA.
+ *****************************************************************************/
+
+package org.videolan.libvlc;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+
+public class EventTraceTest {
+    @Test
+    public void keepsTheLastEventsInOrder() {
+        final EventTrace trace = new EventTrace(4);
+        for (int i = 0; i < 6; ++i)
+            trace.record(0x100 + i, -i, i * 2, i / 2.0f);
+
+        final int[] types = new int[4];
+        final long[] args1 = new long[4];
+        final long[] args2 = new long[4];
+        final float[] argsf1 = new float[4];
+        final long[] timestamps = new long[4];
+        assertEquals(4, trace.copyTo(types, args1, args2, argsf1, timestamps));
+        for (int i = 0; i < 4; ++i) {
+            assertEquals(0x102 + i, types[i]);
+            assertEquals(-(i + 2), args1[i]);
+            assertEquals((i + 2) * 2, args2[i]);
+            assertEquals((i + 2) / 2.0f, argsf1[i], 0.0);
+        }
+        assertEquals(6, trace.getRecordedCount());
+    }
+
+    @Test
+    public void copiedEntriesAreNotTorn() throws InterruptedException {
+        final EventTrace trace = new EventTrace(8);
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; running.get(); ++i)
+                    trace.record(i, i, -i, (float) (i & 0xffff));
+            }
+        });
+        writer.start();
+
+        final int[] types = new int[8];
+        final long[] args1 = new long[8];
+        final long[] args2 = new long[8];
+        final float[] argsf1 = new float[8];
+        final long[] timestamps = new long[8];
+        try {
+            for (int round = 0; round < 100000; ++round) {
+                final int count = trace.copyTo(types, args1, args2, argsf1, timestamps);
+                for (int i = 0; i < count; ++i) {
+                    assertEquals(types[i], args1[i]);
+                    assertEquals(-args1[i], args2[i]);
+                    assertEquals((float) (types[i] & 0xffff), argsf1[i], 0.0);
+                }
+            }
+        } finally {
+            running.set(false);
+            writer.join();
+        }
+    }
+}
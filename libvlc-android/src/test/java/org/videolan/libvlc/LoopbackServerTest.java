@@ -0,0 +1,195 @@
+/*****************************************************************************
+ * LoopbackServerTest.java
+ *****************************************************************************
+ * Copyright © 2017 VLC authors, VideoLAN and VideoLabs
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston MA 02110-1301, USA.
+ *****************************************************************************/
+
+package org.videolan.libvlc;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LoopbackServerTest {
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    private static class ArraySource implements LoopbackServer.Source {
+        final byte[] data;
+
+        ArraySource(int size) {
+            data = new byte[size];
+            for (int i = 0; i < size; ++i)
+                data[i] = (byte) i;
+        }
+
+        @Override
+        public long getSize() {
+            return data.length;
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target)
+                throws IOException {
+            final int length = (int) Math.min(count, data.length - position);
+            final ByteBuffer buffer = ByteBuffer.wrap(data, (int) position, length);
+            while (buffer.hasRemaining())
+                target.write(buffer);
+            return length;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private ArraySource mSource;
+    private String mMrl;
+    private URI mUri;
+
+    @Before
+    public void setUp() throws IOException {
+        mSource = new ArraySource(100000);
+        mMrl = LoopbackServer.register(mSource);
+        mUri = URI.create(mMrl);
+    }
+
+    @After
+    public void tearDown() {
+        LoopbackServer.unregister(mMrl);
+    }
+
+    private Socket connect() throws IOException {
+        final Socket socket = new Socket(mUri.getHost(), mUri.getPort());
+        socket.setSoTimeout(10000);
+        return socket;
+    }
+
+    private static String readLine(InputStream is) throws IOException {
+        final StringBuilder sb = new StringBuilder();
+        int b;
+        while ((b = is.read()) != '\n') {
+            if (b == -1)
+                throw new IOException("end of stream");
+            if (b != '\r')
+                sb.append((char) b);
+        }
+        return sb.toString();
+    }
+
+    /* @return the body of a response */
+    private static byte[] readResponse(InputStream is, String expectedStatus) throws IOException {
+        assertEquals("HTTP/1.1 " + expectedStatus, readLine(is));
+        int length = 0;
+        String line;
+        while (!(line = readLine(is)).isEmpty()) {
+            if (line.startsWith("Content-Length: "))
+                length = Integer.parseInt(line.substring(16));
+        }
+        final byte[] body = new byte[length];
+        int read = 0;
+        while (read < length) {
+            final int n = is.read(body, read, length - read);
+            if (n == -1)
+                throw new IOException("end of stream");
+            read += n;
+        }
+        return body;
+    }
+
+    private void assertRange(byte[] body, int start) {
+        for (int i = 0; i < body.length; ++i)
+            assertEquals(mSource.data[start + i], body[i]);
+    }
+
+    @Test
+    public void servesPipelinedRangeRequests() throws IOException {
+        final Socket socket = connect();
+        try {
+            final String path = mUri.getPath();
+            final ByteArrayOutputStream requests = new ByteArrayOutputStream();
+            requests.write(("GET " + path + " HTTP/1.1\r\nRange: bytes=10-19\r\n\r\n"
+                    + "GET " + path + " HTTP/1.1\r\nRange: bytes=-5\r\n\r\n"
+                    + "HEAD " + path + " HTTP/1.1\r\n\r\n").getBytes(ASCII));
+            final OutputStream os = socket.getOutputStream();
+            /* split in small writes, so that the server reads headers in several chunks */
+            final byte[] bytes = requests.toByteArray();
+            for (int i = 0; i < bytes.length; i += 7) {
+                os.write(bytes, i, Math.min(7, bytes.length - i));
+                os.flush();
+            }
+            final InputStream is = socket.getInputStream();
+            byte[] body = readResponse(is, "206 Partial Content");
+            assertEquals(10, body.length);
+            assertRange(body, 10);
+            body = readResponse(is, "206 Partial Content");
+            assertEquals(5, body.length);
+            assertRange(body, mSource.data.length - 5);
+            assertEquals("HTTP/1.1 200 OK", readLine(is));
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void rejectsUnknownTokens() throws IOException {
+        final Socket socket = connect();
+        try {
+            socket.getOutputStream().write("GET /unknown HTTP/1.1\r\n\r\n".getBytes(ASCII));
+            readResponse(socket.getInputStream(), "404 Not Found");
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void closesConnectionsOverTheLimit() throws IOException {
+        final List<Socket> sockets = new ArrayList<Socket>();
+        try {
+            /* idle connections hold their thread, until the client closes them or they time out */
+            for (int i = 0; i < 16; ++i)
+                sockets.add(connect());
+            final Socket socket = connect();
+            sockets.add(socket);
+            boolean closed;
+            try {
+                closed = socket.getInputStream().read() == -1;
+            } catch (IOException e) {
+                /* reset */
+                closed = true;
+            }
+            assertTrue(closed);
+        } finally {
+            for (Socket socket : sockets)
+                socket.close();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*****************************************************************************
+ * MediaInfoStoreTest.java
+ *****************************************************************************
+ * Copyright © 2017 VLC authors, VideoLAN and VideoLabs
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston MA 02110-1301, USA.
+ *****************************************************************************/
+
+package org.videolan.libvlc;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class MediaInfoStoreTest {
+    private static MediaInfo newInfo(int i) {
+        final String[] metas = new String[Media.Meta.MAX];
+        metas[Media.Meta.Title] = "title " + i;
+        final Media.Track[] tracks = new Media.Track[] {
+                Media.createAudioTrackFromNative(new String("mp4a"), null, 1, 0, 0, 128000,
+                        new String("eng"), "track " + i, 2, 44100),
+        };
+        return new MediaInfo(metas, tracks, i * 1000L, Media.Type.File, Media.ParsedStatus.Done);
+    }
+
+    private static String mrlOf(int i) {
+        return "file:///sdcard/Music/" + i + ".mp3";
+    }
+
+    @Test
+    public void findsRowsByMrl() {
+        final MediaInfoStore store = new MediaInfoStore();
+        for (int i = 0; i < 1000; ++i)
+            assertEquals(i, store.add(mrlOf(i), newInfo(i)));
+        store.add(null, newInfo(-1));
+        assertEquals(1001, store.getRowCount());
+        for (int i = 0; i < 1000; ++i) {
+            assertEquals(i, store.findRow(mrlOf(i)));
+            assertEquals("title " + i, store.getMeta(i, Media.Meta.Title));
+            assertNull(store.getMeta(i, Media.Meta.Artist));
+            assertEquals(i * 1000L, store.getDuration(i));
+        }
+        assertEquals(-1, store.findRow("file:///sdcard/Music/missing.mp3"));
+        assertEquals(-1, store.findRow(null));
+    }
+
+    @Test
+    public void findsTheLastRowOfAnMrlAddedTwice() {
+        final MediaInfoStore store = new MediaInfoStore();
+        store.add(mrlOf(0), newInfo(0));
+        store.add(mrlOf(1), newInfo(1));
+        store.add(mrlOf(0), newInfo(2));
+        assertEquals(2, store.findRow(mrlOf(0)));
+        assertEquals(1, store.findRow(mrlOf(1)));
+    }
+
+    @Test
+    public void internsTrackStringsOnly() {
+        final MediaInfoStore store = new MediaInfoStore();
+        store.add(mrlOf(0), newInfo(0));
+        store.add(mrlOf(1), newInfo(1));
+        final Media.Track first = store.getTrack(0, 0);
+        final Media.Track second = store.getTrack(1, 0);
+        assertSame(first.codec, second.codec);
+        assertSame(first.language, second.language);
+        assertEquals("track 1", second.description);
+        assertEquals(44100, ((Media.AudioTrack) second).rate);
+        assertNull(store.getTrack(1, 1));
+    }
+
+    @Test
+    public void readsWhileAdding() throws InterruptedException {
+        final MediaInfoStore store = new MediaInfoStore();
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicReference<String> failure = new AtomicReference<String>();
+        final Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (running.get()) {
+                    final int count = store.getRowCount();
+                    for (int i = 0; i < count; ++i) {
+                        if (store.findRow(mrlOf(i)) != i
+                                || !("title " + i).equals(store.getMeta(i, Media.Meta.Title)))
+                            failure.set("row " + i + " of " + count);
+                    }
+                }
+            }
+        });
+        reader.start();
+        for (int i = 0; i < 5000; ++i)
+            store.add(mrlOf(i), newInfo(i));
+        running.set(false);
+        reader.join();
+        assertNull(failure.get());
+    }
+}
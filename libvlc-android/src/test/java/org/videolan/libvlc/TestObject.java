@@ -0,0 +1,76 @@
+/*****************************************************************************
+ * TestObject.java
+ *****************************************************************************
+ * Copyright © 2017 VLC authors, VideoLAN and VideoLabs
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston MA 02110-1301, USA.
+ *****************************************************************************/
+
+package org.videolan.libvlc;
+
+/**
+ * VLCObject without native object, events are injected with {@link #dispatch}.
+ */
+class TestObject extends VLCObject<TestObject.Event> {
+    static final int TimeChanged = 0x10b;
+    static final int EndReached = 0x109;
+
+    static class Event extends VLCEvent {
+        Event(int type, long arg1, long arg2, float argf1) {
+            super(type, arg1, arg2, argf1);
+        }
+
+        long getArg1() {
+            return arg1;
+        }
+    }
+
+    /* if false, events without listener are dropped before onEventNative() */
+    boolean internalEvents = true;
+    int nativeEventCount = 0;
+
+    TestObject() {
+        super();
+    }
+
+    void dispatch(int eventType, long arg1) {
+        dispatchEventFromNative(eventType, arg1, 0, 0.0f);
+    }
+
+    @Override
+    protected boolean isConflatable(int eventType) {
+        return eventType == TimeChanged;
+    }
+
+    @Override
+    protected Event createEvent(int eventType, long arg1, long arg2, float argf1) {
+        return new Event(eventType, arg1, arg2, argf1);
+    }
+
+    @Override
+    protected boolean isInternalEvent(int eventType) {
+        return internalEvents;
+    }
+
+    @Override
+    protected Event onEventNative(int eventType, long arg1, long arg2, float argf1) {
+        nativeEventCount++;
+        return obtainEvent(eventType, arg1, arg2, argf1);
+    }
+
+    @Override
+    protected void onReleaseNative() {
+    }
+}